@@ -0,0 +1,202 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Scores recorded audio (WAV, AIFF or anything else javax.sound.sampled
+ * reads) frame by frame.
+ *
+ * The file is read in fixed-size chunks through an NIO channel and mixed down
+ * to mono. Every hop samples a Hann-windowed frame goes through an in-place
+ * FFT; the strongest spectral peaks (parabolically interpolated) become the
+ * freqs[]/amplitudes[] of that frame, which are then scored with the
+ * normalSethares roughness and DissonanceCalculator.rqa. All buffers are
+ * allocated up front, so the per-frame work does not allocate.
+ *
+ * Instances are not thread-safe.
+ */
+public class AudioAnalyzer {
+
+    public interface FrameListener {
+        /** freqs and amplitudes hold `peaks` entries sorted by frequency and are reused. */
+        void onFrame(long frame, double seconds, double roughness, double rqa,
+                     double[] freqs, double[] amplitudes, int peaks);
+    }
+
+    private final int frameSize;
+    private final int hop;
+    private final int maxPeaks;
+    private final double floor;   // peak threshold relative to the loudest bin
+    private final double overtone;
+
+    private final Fft fft;
+    private final double[] window;
+    private final double windowGain;
+    private final double[] samples;
+    private final double[] re;
+    private final double[] im;
+    private final double[] magnitude;
+    private final double[] peakFreqs;
+    private final double[] peakAmps;
+
+    public AudioAnalyzer() {
+        this(4096, 2048, 32, -60, 0.8);
+    }
+
+    /**
+     * @param thresholdDb peaks quieter than this relative to the loudest bin are ignored
+     * @param overtone    the overtone richness O used to weight the roughness score
+     */
+    public AudioAnalyzer(int frameSize, int hop, int maxPeaks, double thresholdDb, double overtone) {
+        if (hop < 1 || hop > frameSize || maxPeaks < 1) throw new IllegalArgumentException("Invalid analysis parameters");
+        this.fft = new Fft(frameSize);
+        this.frameSize = frameSize;
+        this.hop = hop;
+        this.maxPeaks = maxPeaks;
+        this.floor = Math.pow(10, thresholdDb / 20);
+        this.overtone = overtone;
+
+        window = new double[frameSize];
+        double sum = 0;
+        for (int i = 0; i < frameSize; i++) {
+            window[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / (frameSize - 1));
+            sum += window[i];
+        }
+        windowGain = 2 / sum; // sine of amplitude A peaks at A after this scaling
+
+        samples = new double[frameSize];
+        re = new double[frameSize];
+        im = new double[frameSize];
+        magnitude = new double[frameSize / 2 + 1];
+        peakFreqs = new double[maxPeaks];
+        peakAmps = new double[maxPeaks];
+    }
+
+    /** Analyzes a file; returns the number of frames scored. */
+    public long analyze(File file, FrameListener listener) throws IOException, UnsupportedAudioFileException {
+        try (AudioInputStream in = pcm(AudioSystem.getAudioInputStream(file))) {
+            return analyze(in, listener);
+        }
+    }
+
+    public long analyze(AudioInputStream in, FrameListener listener) throws IOException {
+        AudioFormat format = in.getFormat();
+        int channels = format.getChannels();
+        int bytesPerSample = (format.getSampleSizeInBits() + 7) / 8;
+        int frameBytes = channels * bytesPerSample;
+        boolean bigEndian = format.isBigEndian();
+        boolean signed = format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED;
+        double scale = 1.0 / (1L << (bytesPerSample * 8 - 1)) / channels;
+        double sampleRate = format.getSampleRate();
+
+        ReadableByteChannel channel = Channels.newChannel(in);
+        ByteBuffer buf = ByteBuffer.allocate(frameBytes * 8192);
+        int filled = 0;
+        long frames = 0;
+
+        while (channel.read(buf) >= 0) {
+            buf.flip();
+            while (buf.remaining() >= frameBytes) {
+                double mono = 0;
+                for (int c = 0; c < channels; c++) mono += decode(buf, bytesPerSample, bigEndian, signed);
+                samples[filled++] = mono * scale;
+                if (filled == frameSize) {
+                    double seconds = (double) frames * hop / sampleRate;
+                    scoreFrame(frames++, seconds, sampleRate, listener);
+                    System.arraycopy(samples, hop, samples, 0, frameSize - hop);
+                    filled = frameSize - hop;
+                }
+            }
+            buf.compact();
+        }
+        return frames;
+    }
+
+    // Converts compressed or float input to 16-bit signed PCM
+    private static AudioInputStream pcm(AudioInputStream in) {
+        AudioFormat f = in.getFormat();
+        AudioFormat.Encoding e = f.getEncoding();
+        if ((e == AudioFormat.Encoding.PCM_SIGNED || e == AudioFormat.Encoding.PCM_UNSIGNED)
+                && f.getSampleSizeInBits() <= 32) {
+            return in;
+        }
+        AudioFormat target = new AudioFormat(f.getSampleRate(), 16, f.getChannels(), true, false);
+        return AudioSystem.getAudioInputStream(target, in);
+    }
+
+    private static long decode(ByteBuffer buf, int bytes, boolean bigEndian, boolean signed) {
+        long v = 0;
+        if (bigEndian) {
+            for (int i = 0; i < bytes; i++) v = (v << 8) | (buf.get() & 0xFF);
+        } else {
+            for (int i = 0; i < bytes; i++) v |= (long) (buf.get() & 0xFF) << (8 * i);
+        }
+        int bits = bytes * 8;
+        if (signed) {
+            v = (v << (64 - bits)) >> (64 - bits); // sign-extend
+        } else {
+            v -= 1L << (bits - 1);
+        }
+        return v;
+    }
+
+    private void scoreFrame(long frame, double seconds, double sampleRate, FrameListener listener) {
+        for (int i = 0; i < frameSize; i++) {
+            re[i] = samples[i] * window[i];
+            im[i] = 0;
+        }
+        fft.transform(re, im);
+
+        int bins = frameSize / 2;
+        double max = 0;
+        for (int k = 0; k <= bins; k++) {
+            magnitude[k] = Math.sqrt(re[k] * re[k] + im[k] * im[k]) * windowGain;
+            max = Math.max(max, magnitude[k]);
+        }
+
+        int peaks = pickPeaks(bins, max * floor, sampleRate);
+        DissonanceCalculator.sortByFrequency(peakFreqs, peakAmps, 0, peaks - 1);
+
+        double raw = DissonanceCalculator.normalSetharesSorted(peakFreqs, peakAmps, peaks, Double.POSITIVE_INFINITY);
+        double roughness = DissonanceCalculator.normalizeRoughness(raw, peaks, overtone);
+        double rqa = peaks > 0 ? DissonanceCalculator.rqa(peakFreqs, peaks) : 0;
+        listener.onFrame(frame, seconds, roughness, rqa, peakFreqs, peakAmps, peaks);
+    }
+
+    // Keeps the maxPeaks strongest local maxima above the threshold
+    private int pickPeaks(int bins, double threshold, double sampleRate) {
+        int count = 0;
+        double binHz = sampleRate / frameSize;
+        for (int k = 1; k < bins; k++) {
+            double m = magnitude[k];
+            if (m <= threshold || m < magnitude[k - 1] || m <= magnitude[k + 1]) continue;
+
+            // Parabolic interpolation on log magnitude
+            double a = Math.log(magnitude[k - 1] + 1e-30), b = Math.log(m), c = Math.log(magnitude[k + 1] + 1e-30);
+            double denom = a - 2 * b + c;
+            double offset = denom != 0 ? 0.5 * (a - c) / denom : 0;
+            double freq = (k + offset) * binHz;
+            double amp = Math.exp(b - 0.25 * (a - c) * offset);
+
+            if (count < maxPeaks) {
+                peakFreqs[count] = freq;
+                peakAmps[count] = amp;
+                count++;
+            } else {
+                int weakest = 0;
+                for (int i = 1; i < count; i++) if (peakAmps[i] < peakAmps[weakest]) weakest = i;
+                if (amp > peakAmps[weakest]) {
+                    peakFreqs[weakest] = freq;
+                    peakAmps[weakest] = amp;
+                }
+            }
+        }
+        return count;
+    }
+}
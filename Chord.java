@@ -10,4 +10,12 @@ public class Chord {
         instrument = "Piano";
         dynamics = "mf";
     }
+
+    public Chord copy() {
+        Chord c = new Chord();
+        c.midiNotes.addAll(midiNotes);
+        c.instrument = instrument;
+        c.dynamics = dynamics;
+        return c;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,60 @@
+import java.util.Arrays;
+
+/**
+ * Interns CompactChords so every distinct (notes, instrument, dynamic) exists
+ * once and can be referred to by a dense int id. Lookups use an open-addressing
+ * table and do not allocate for chords already in the pool. Not thread-safe;
+ * build the pool on one thread, then share it read-only.
+ */
+public class ChordPool {
+
+    private CompactChord[] chords = new CompactChord[64];
+    private int size;
+    private int[] table = new int[128]; // id + 1, 0 = empty
+
+    public int size() {
+        return size;
+    }
+
+    public CompactChord get(int id) {
+        return chords[id];
+    }
+
+    public int intern(CompactChord chord) {
+        return intern(chord.lo, chord.hi, chord.instrument, chord.dynamic, chord);
+    }
+
+    public int intern(long lo, long hi, int instrument, int dynamic) {
+        return intern(lo, hi, instrument, dynamic, null);
+    }
+
+    private int intern(long lo, long hi, int instrument, int dynamic, CompactChord candidate) {
+        int mask = table.length - 1;
+        int slot = CompactChord.hash(lo, hi, instrument, dynamic) & mask;
+        while (table[slot] != 0) {
+            CompactChord c = chords[table[slot] - 1];
+            if (c.lo == lo && c.hi == hi && c.instrument == instrument && c.dynamic == dynamic) {
+                return table[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == chords.length) chords = Arrays.copyOf(chords, size * 2);
+        chords[size] = candidate != null ? candidate : new CompactChord(lo, hi, instrument, dynamic);
+        table[slot] = ++size;
+        if (size * 2 > table.length) rehash();
+        return size - 1;
+    }
+
+    private void rehash() {
+        int[] newTable = new int[table.length * 2];
+        int mask = newTable.length - 1;
+        for (int id = 0; id < size; id++) {
+            CompactChord c = chords[id];
+            int slot = CompactChord.hash(c.lo, c.hi, c.instrument, c.dynamic) & mask;
+            while (newTable[slot] != 0) slot = (slot + 1) & mask;
+            newTable[slot] = id + 1;
+        }
+        table = newTable;
+    }
+}
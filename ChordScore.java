@@ -0,0 +1,39 @@
+/**
+ * Scores for a single chord, as produced by {@link TensionEngine}.
+ * The seven holistic components follow the order listed in the README.
+ */
+public class ChordScore {
+    public double sethares;   // raw Sethares roughness
+    public double ttp;        // tonal tension profile
+    public double rqa;        // recurrence (stability) measure, 0..1
+    public double holistic;   // weighted sum of the seven components
+
+    // Holistic components
+    public double prevDistance;        // 1. distance from previous chord
+    public double keyDistance;         // 2. distance from key
+    public double functionDistance;    // 3. distance from tonal function
+    public double roughness;           // 4. normalized psychoacoustic roughness
+    public double voiceLeading;        // 5. voice-leading smoothness
+    public double hierarchical;        // 6. hierarchical tension
+    public double temporalInstability; // 7. temporal instability (1 - RQA)
+
+    public static final int COMPONENTS = 7;
+    public static final String[] NAMES = {
+        "prevDistance", "keyDistance", "functionDistance", "roughness",
+        "voiceLeading", "hierarchical", "temporalInstability"
+    };
+
+    // Component i in README order, 0-based
+    public double component(int i) {
+        return switch (i) {
+            case 0 -> prevDistance;
+            case 1 -> keyDistance;
+            case 2 -> functionDistance;
+            case 3 -> roughness;
+            case 4 -> voiceLeading;
+            case 5 -> hierarchical;
+            case 6 -> temporalInstability;
+            default -> throw new IllegalArgumentException("No component " + i);
+        };
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Compact, immutable chord: the MIDI notes as a 128-bit set (lo holds notes
+ * 0-63, hi notes 64-127), the 12-bit pitch-class mask used by TivTable, and
+ * the instrument and dynamic as the ordinal codes of InstrumentOvertones and
+ * TensionEngine. Notes come back in ascending order; duplicates collapse.
+ */
+public final class CompactChord {
+
+    public final long lo;
+    public final long hi;
+    public final short pcMask;
+    public final byte instrument;
+    public final byte dynamic;
+
+    public CompactChord(long lo, long hi, int instrument, int dynamic) {
+        this.lo = lo;
+        this.hi = hi;
+        this.pcMask = (short) pitchClassMask(lo, hi);
+        this.instrument = (byte) instrument;
+        this.dynamic = (byte) dynamic;
+    }
+
+    public static CompactChord of(int[] notes, int n, int instrument, int dynamic) {
+        long lo = 0, hi = 0;
+        for (int i = 0; i < n; i++) {
+            int note = notes[i];
+            if (note < 0 || note > 127) throw new IllegalArgumentException("MIDI note out of range: " + note);
+            if (note < 64) lo |= 1L << note;
+            else hi |= 1L << (note - 64);
+        }
+        return new CompactChord(lo, hi, instrument, dynamic);
+    }
+
+    public static CompactChord of(Chord chord) {
+        int[] notes = TensionEngine.toArray(chord.midiNotes);
+        return of(notes, notes.length,
+                InstrumentOvertones.indexOf(chord.instrument), TensionEngine.dynamicIndex(chord.dynamics));
+    }
+
+    public int size() {
+        return Long.bitCount(lo) + Long.bitCount(hi);
+    }
+
+    public boolean contains(int note) {
+        return note < 64 ? (lo & (1L << note)) != 0 : (hi & (1L << (note - 64))) != 0;
+    }
+
+    /** Writes the notes in ascending order into `into`; returns how many. */
+    public int notes(int[] into) {
+        int n = 0;
+        for (long bits = lo; bits != 0; bits &= bits - 1) into[n++] = Long.numberOfTrailingZeros(bits);
+        for (long bits = hi; bits != 0; bits &= bits - 1) into[n++] = 64 + Long.numberOfTrailingZeros(bits);
+        return n;
+    }
+
+    public int[] notes() {
+        int[] out = new int[size()];
+        notes(out);
+        return out;
+    }
+
+    public String instrumentName() {
+        return InstrumentOvertones.INSTRUMENTS[instrument];
+    }
+
+    public String dynamicName() {
+        return TensionEngine.DYNAMICS[dynamic];
+    }
+
+    public Chord toChord() {
+        Chord chord = new Chord();
+        for (int note : notes()) chord.midiNotes.add(note);
+        chord.instrument = instrumentName();
+        chord.dynamics = dynamicName();
+        return chord;
+    }
+
+    static int pitchClassMask(long lo, long hi) {
+        int m = 0;
+        for (long bits = lo; bits != 0; bits &= bits - 1) m |= 1 << (Long.numberOfTrailingZeros(bits) % 12);
+        for (long bits = hi; bits != 0; bits &= bits - 1) m |= 1 << ((64 + Long.numberOfTrailingZeros(bits)) % 12);
+        return m;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof CompactChord)) return false;
+        CompactChord c = (CompactChord) o;
+        return lo == c.lo && hi == c.hi && instrument == c.instrument && dynamic == c.dynamic;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash(lo, hi, instrument, dynamic);
+    }
+
+    static int hash(long lo, long hi, int instrument, int dynamic) {
+        long h = lo * 0x9E3779B97F4A7C15L + hi;
+        h = h * 0x9E3779B97F4A7C15L + ((instrument << 8) | dynamic);
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.Arrays;
+
+/**
+ * Column-wise store for many compositions. Each chord is an int id into a
+ * shared ChordPool, so a repeated voicing costs 4 bytes; per-composition data
+ * (chord range and key) lives in parallel primitive arrays.
+ */
+public class CompactCorpus {
+
+    private final ChordPool pool;
+
+    private int[] chordIds = new int[1024];
+    private int chordCount;
+
+    // Composition c owns chordIds[start[c], start[c + 1])
+    private int[] start = new int[65];
+    private byte[] keyIndex = new byte[64];
+    private int compositionCount;
+
+    public CompactCorpus() {
+        this(new ChordPool());
+    }
+
+    public CompactCorpus(ChordPool pool) {
+        this.pool = pool;
+    }
+
+    public ChordPool pool() {
+        return pool;
+    }
+
+    /** Appends a composition; returns its index. */
+    public int add(Composition composition) {
+        int c = beginComposition(composition.key != null ? composition.key : "C", composition.isMajor);
+        for (Chord chord : composition.chords) addChord(CompactChord.of(chord));
+        return c;
+    }
+
+    public int beginComposition(String key, boolean isMajor) {
+        if (compositionCount == keyIndex.length) {
+            keyIndex = Arrays.copyOf(keyIndex, keyIndex.length * 2);
+            start = Arrays.copyOf(start, keyIndex.length + 1);
+        }
+        keyIndex[compositionCount] = (byte) TivTable.keyIndex(key, isMajor);
+        start[compositionCount] = chordCount;
+        start[compositionCount + 1] = chordCount;
+        return compositionCount++;
+    }
+
+    /** Adds a chord to the composition begun last. */
+    public void addChord(CompactChord chord) {
+        if (compositionCount == 0) throw new IllegalStateException("No composition begun");
+        if (chordCount == chordIds.length) chordIds = Arrays.copyOf(chordIds, chordIds.length * 2);
+        chordIds[chordCount++] = pool.intern(chord);
+        start[compositionCount] = chordCount;
+    }
+
+    public int compositionCount() {
+        return compositionCount;
+    }
+
+    public int totalChords() {
+        return chordCount;
+    }
+
+    public int chordCount(int composition) {
+        return start[composition + 1] - start[composition];
+    }
+
+    public int keyIndex(int composition) {
+        return keyIndex[composition];
+    }
+
+    public int chordId(int composition, int i) {
+        return chordIds[start[composition] + i];
+    }
+
+    public CompactChord chord(int composition, int i) {
+        return pool.get(chordId(composition, i));
+    }
+
+    public Composition toComposition(int composition) {
+        Composition c = new Composition();
+        int k = keyIndex[composition];
+        c.isMajor = k < 12;
+        c.key = PITCH_NAMES[k % 12];
+        for (int i = 0; i < chordCount(composition); i++) c.chords.add(chord(composition, i).toChord());
+        if (!c.chords.isEmpty()) c.instrument = c.chords.get(0).instrument;
+        return c;
+    }
+
+    static final String[] PITCH_NAMES =
+            {"C", "C#", "D", "D#", "E", "F", "F#", "G", "G#", "A", "A#", "B"};
+}
@@ -13,4 +13,14 @@ public class Composition {
         this.instrument = "Piano"; // default
         this.chords = new ArrayList<>();
     }
+
+    // Deep copy, e.g. to hand a snapshot to a background thread
+    public Composition copy() {
+        Composition c = new Composition();
+        c.key = key;
+        c.isMajor = isMajor;
+        c.instrument = instrument;
+        for (Chord chord : chords) c.chords.add(chord.copy());
+        return c;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,356 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Binary file of compositions and, optionally, their computed scores.
+ *
+ * Layout (little-endian):
+ *
+ *   header   int magic "TDCF", int version, int flags, int record size
+ *   chords   one fixed-size record per chord, compositions back to back:
+ *              long lo, long hi (CompactChord note mask), byte instrument,
+ *              byte dynamic, 6 bytes padding, then with FLAG_SCORES the
+ *              SCORE_FIELDS doubles of its ChordScore (see SCORE_FIELDS)
+ *   table    16 bytes per composition: long first chord, int chord count,
+ *              byte TivTable key index, 3 bytes padding
+ *   trailer  long composition count, long chord count, long table offset,
+ *              int magic, int flags
+ *
+ * The Writer streams chords out as they come and only keeps the small
+ * composition table in memory. Opening a file maps it and reads nothing but
+ * the trailer; chords and scores are read in place through the accessors, so
+ * a corpus of millions of scored chords opens in milliseconds and each access
+ * costs a few absolute buffer reads.
+ */
+public class CorpusFile implements AutoCloseable {
+
+    public static final int MAGIC = 0x46434454; // "TDCF" little-endian
+    public static final int VERSION = 1;
+    public static final int FLAG_SCORES = 1;
+
+    public static final int HEADER_BYTES = 16;
+    public static final int CHORD_BYTES = 24;
+    public static final int TABLE_ENTRY_BYTES = 16;
+    public static final int TRAILER_BYTES = 32;
+
+    // Score fields of a record: the ChordScore components in README order, then these
+    public static final int SETHARES = ChordScore.COMPONENTS;
+    public static final int TTP = SETHARES + 1;
+    public static final int RQA = SETHARES + 2;
+    public static final int HOLISTIC = SETHARES + 3;
+    public static final int SCORE_FIELDS = HOLISTIC + 1;
+
+    private static final long MAP_LIMIT = 1L << 30;
+
+    private final FileChannel channel;
+    private final int flags;
+    private final int recordBytes;
+    private final long compositionCount;
+    private final long chordCount;
+    private final long recordsPerSegment;
+    private final MappedByteBuffer[] segments;
+    private final MappedByteBuffer table;
+
+    private CorpusFile(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long size = channel.size();
+        if (size < HEADER_BYTES + TRAILER_BYTES) throw new IOException("Not a corpus file");
+
+        ByteBuffer header = read(channel, 0, HEADER_BYTES);
+        if (header.getInt() != MAGIC) throw new IOException("Not a corpus file");
+        int version = header.getInt();
+        if (version != VERSION) throw new IOException("Unsupported corpus file version " + version);
+        flags = header.getInt();
+        recordBytes = header.getInt();
+        if (recordBytes != recordBytes(flags)) throw new IOException("Corrupt corpus file header");
+
+        ByteBuffer trailer = read(channel, size - TRAILER_BYTES, TRAILER_BYTES);
+        compositionCount = trailer.getLong();
+        chordCount = trailer.getLong();
+        long tableOffset = trailer.getLong();
+        if (trailer.getInt() != MAGIC) throw new IOException("Truncated corpus file (no trailer)");
+        if (tableOffset != HEADER_BYTES + chordCount * recordBytes
+                || tableOffset + compositionCount * TABLE_ENTRY_BYTES + TRAILER_BYTES != size) {
+            throw new IOException("Corrupt corpus file trailer");
+        }
+        if (compositionCount * TABLE_ENTRY_BYTES > Integer.MAX_VALUE) throw new IOException("Composition table too large");
+
+        recordsPerSegment = MAP_LIMIT / recordBytes;
+        int segmentCount = (int) ((chordCount + recordsPerSegment - 1) / recordsPerSegment);
+        segments = new MappedByteBuffer[segmentCount];
+        for (int s = 0; s < segmentCount; s++) {
+            long first = s * recordsPerSegment;
+            long count = Math.min(recordsPerSegment, chordCount - first);
+            segments[s] = map(channel, HEADER_BYTES + first * recordBytes, count * recordBytes);
+        }
+        table = map(channel, tableOffset, compositionCount * TABLE_ENTRY_BYTES);
+    }
+
+    public static CorpusFile open(Path file) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new CorpusFile(ch);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    public boolean hasScores() {
+        return (flags & FLAG_SCORES) != 0;
+    }
+
+    // Compositions
+
+    public long compositionCount() {
+        return compositionCount;
+    }
+
+    public long totalChords() {
+        return chordCount;
+    }
+
+    /** Global index of the composition's first chord. */
+    public long firstChord(long composition) {
+        return table.getLong(tableOffset(composition));
+    }
+
+    public int chordCount(long composition) {
+        return table.getInt(tableOffset(composition) + 8);
+    }
+
+    public int keyIndex(long composition) {
+        return table.get(tableOffset(composition) + 12);
+    }
+
+    public Composition toComposition(long composition) {
+        Composition c = new Composition();
+        int k = keyIndex(composition);
+        c.isMajor = k < 12;
+        c.key = CompactCorpus.PITCH_NAMES[k % 12];
+        long first = firstChord(composition);
+        for (int i = 0; i < chordCount(composition); i++) c.chords.add(chord(first + i).toChord());
+        if (!c.chords.isEmpty()) c.instrument = c.chords.get(0).instrument;
+        return c;
+    }
+
+    // Chords, by global index
+
+    public long lo(long chord) {
+        return segment(chord).getLong(offset(chord));
+    }
+
+    public long hi(long chord) {
+        return segment(chord).getLong(offset(chord) + 8);
+    }
+
+    public int instrument(long chord) {
+        return segment(chord).get(offset(chord) + 16);
+    }
+
+    public int dynamic(long chord) {
+        return segment(chord).get(offset(chord) + 17);
+    }
+
+    public CompactChord chord(long chord) {
+        MappedByteBuffer seg = segment(chord);
+        int off = offset(chord);
+        return new CompactChord(seg.getLong(off), seg.getLong(off + 8), seg.get(off + 16), seg.get(off + 17));
+    }
+
+    /** One score field (a ChordScore component index, or SETHARES, TTP, RQA, HOLISTIC). */
+    public double score(long chord, int field) {
+        if (!hasScores()) throw new IllegalStateException("File has no scores");
+        if (field < 0 || field >= SCORE_FIELDS) throw new IllegalArgumentException("No score field " + field);
+        return segment(chord).getDouble(offset(chord) + CHORD_BYTES + field * 8);
+    }
+
+    public void scoreInto(long chord, ChordScore out) {
+        if (!hasScores()) throw new IllegalStateException("File has no scores");
+        MappedByteBuffer seg = segment(chord);
+        int off = offset(chord) + CHORD_BYTES;
+        out.prevDistance = seg.getDouble(off);
+        out.keyDistance = seg.getDouble(off + 8);
+        out.functionDistance = seg.getDouble(off + 16);
+        out.roughness = seg.getDouble(off + 24);
+        out.voiceLeading = seg.getDouble(off + 32);
+        out.hierarchical = seg.getDouble(off + 40);
+        out.temporalInstability = seg.getDouble(off + 48);
+        out.sethares = seg.getDouble(off + SETHARES * 8);
+        out.ttp = seg.getDouble(off + TTP * 8);
+        out.rqa = seg.getDouble(off + RQA * 8);
+        out.holistic = seg.getDouble(off + HOLISTIC * 8);
+    }
+
+    private MappedByteBuffer segment(long chord) {
+        if (chord < 0 || chord >= chordCount) throw new IndexOutOfBoundsException("Chord " + chord + " of " + chordCount);
+        return segments[(int) (chord / recordsPerSegment)];
+    }
+
+    private int offset(long chord) {
+        return (int) (chord % recordsPerSegment) * recordBytes;
+    }
+
+    private int tableOffset(long composition) {
+        if (composition < 0 || composition >= compositionCount)
+            throw new IndexOutOfBoundsException("Composition " + composition + " of " + compositionCount);
+        return (int) composition * TABLE_ENTRY_BYTES;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close(); // mappings stay valid until collected
+    }
+
+    private static int recordBytes(int flags) {
+        return CHORD_BYTES + ((flags & FLAG_SCORES) != 0 ? SCORE_FIELDS * 8 : 0);
+    }
+
+    private static MappedByteBuffer map(FileChannel ch, long pos, long length) throws IOException {
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, length);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        return buf;
+    }
+
+    private static ByteBuffer read(FileChannel ch, long pos, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buf.hasRemaining() && ch.read(buf, pos + buf.position()) >= 0) { }
+        if (buf.hasRemaining()) throw new IOException("Unexpected end of corpus file");
+        return buf.flip();
+    }
+
+    /**
+     * Streams compositions to a new corpus file. Chords are written as they
+     * are added; the composition table and trailer are written by close(), so
+     * a file that was not closed is rejected when opened. If a write or an
+     * add fails, close() deletes the partial file instead of finishing it.
+     *
+     * As a CorpusScorer.ResultSink it adds each scored composition, with
+     * write errors rethrown as UncheckedIOException.
+     */
+    public static class Writer implements CorpusScorer.ResultSink, AutoCloseable {
+
+        private final Path file;
+        private final FileChannel channel;
+        private final boolean scores;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+        private long[] first = new long[64];
+        private int[] count = new int[64];
+        private byte[] keys = new byte[64];
+        private int compositions;
+        private long chords;
+        private boolean failed;
+        private boolean closed;
+
+        public Writer(Path file, boolean scores) throws IOException {
+            this.file = file;
+            this.scores = scores;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            int flags = scores ? FLAG_SCORES : 0;
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(flags).putInt(recordBytes(flags));
+        }
+
+        /** Appends a composition and, when this file has scores, its scores (one per chord). */
+        public void add(Composition composition, ArrayList<ChordScore> chordScores) throws IOException {
+            if (scores && (chordScores == null || chordScores.size() != composition.chords.size())) {
+                throw new IllegalArgumentException("This file stores one score per chord");
+            }
+            beginComposition(TivTable.keyIndex(composition.key != null ? composition.key : "C", composition.isMajor));
+            try {
+                for (int i = 0; i < composition.chords.size(); i++) {
+                    addChord(CompactChord.of(composition.chords.get(i)), chordScores != null ? chordScores.get(i) : null);
+                }
+            } catch (IOException | RuntimeException e) {
+                failed = true; // the composition is half written
+                throw e;
+            }
+        }
+
+        @Override
+        public void accept(long index, Composition composition, ArrayList<ChordScore> chordScores) {
+            try {
+                add(composition, chordScores);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        public void beginComposition(int keyIndex) {
+            checkOpen();
+            if (compositions == keys.length) {
+                first = Arrays.copyOf(first, compositions * 2);
+                count = Arrays.copyOf(count, compositions * 2);
+                keys = Arrays.copyOf(keys, compositions * 2);
+            }
+            first[compositions] = chords;
+            keys[compositions] = (byte) keyIndex;
+            compositions++;
+        }
+
+        public void addChord(CompactChord chord, ChordScore score) throws IOException {
+            checkOpen();
+            if (compositions == 0) throw new IllegalStateException("beginComposition first");
+            if (scores && score == null) throw new IllegalArgumentException("This file stores scores");
+            if (buffer.remaining() < CHORD_BYTES + SCORE_FIELDS * 8) drain();
+            buffer.putLong(chord.lo).putLong(chord.hi).put(chord.instrument).put(chord.dynamic)
+                    .putShort((short) 0).putInt(0);
+            if (scores) {
+                for (int i = 0; i < ChordScore.COMPONENTS; i++) buffer.putDouble(score.component(i));
+                buffer.putDouble(score.sethares).putDouble(score.ttp).putDouble(score.rqa).putDouble(score.holistic);
+            }
+            count[compositions - 1]++;
+            chords++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                if (!failed) writeTable();
+            } finally {
+                channel.close();
+                if (failed) Files.deleteIfExists(file);
+            }
+        }
+
+        private void writeTable() throws IOException {
+            long tableOffset = HEADER_BYTES + chords * recordBytes(scores ? FLAG_SCORES : 0);
+            for (int c = 0; c < compositions; c++) {
+                if (buffer.remaining() < TABLE_ENTRY_BYTES) drain();
+                buffer.putLong(first[c]).putInt(count[c]).put(keys[c]).put((byte) 0).putShort((short) 0);
+            }
+            if (buffer.remaining() < TRAILER_BYTES) drain();
+            buffer.putLong(compositions).putLong(chords).putLong(tableOffset)
+                    .putInt(MAGIC).putInt(scores ? FLAG_SCORES : 0);
+            drain();
+        }
+
+        private void checkOpen() {
+            if (closed) throw new IllegalStateException("Writer is closed");
+            if (failed) throw new IllegalStateException("An earlier write failed");
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) channel.write(buffer);
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Scores a stream of compositions on all cores.
+ *
+ * Compositions are pulled from the source only while fewer than maxInFlight
+ * are queued or running, so memory stays flat however large the corpus is.
+ * Results are handed to the sink on the calling thread in source order.
+ */
+public class CorpusScorer implements AutoCloseable {
+
+    public interface ResultSink {
+        void accept(long index, Composition composition, ArrayList<ChordScore> scores);
+    }
+
+    private final TensionEngine engine;
+    private final ExecutorService pool;
+    private final int maxInFlight;
+
+    public CorpusScorer(TensionEngine engine) {
+        this(engine, Runtime.getRuntime().availableProcessors());
+    }
+
+    public CorpusScorer(TensionEngine engine, int threads) {
+        this(engine, threads, threads * 4);
+    }
+
+    public CorpusScorer(TensionEngine engine, int threads, int maxInFlight) {
+        if (threads < 1 || maxInFlight < 1) throw new IllegalArgumentException("threads and maxInFlight must be >= 1");
+        this.engine = engine;
+        this.maxInFlight = maxInFlight;
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "corpus-scorer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static class Pending {
+        final long index;
+        final Composition composition;
+        final Future<ArrayList<ChordScore>> scores;
+
+        Pending(long index, Composition composition, Future<ArrayList<ChordScore>> scores) {
+            this.index = index;
+            this.composition = composition;
+            this.scores = scores;
+        }
+    }
+
+    /** Scores every composition from the source; returns how many were scored. */
+    public long score(Iterator<Composition> source, ResultSink sink) {
+        ArrayDeque<Pending> inFlight = new ArrayDeque<>();
+        long index = 0;
+        try {
+            while (source.hasNext()) {
+                if (inFlight.size() >= maxInFlight) emit(inFlight.poll(), sink);
+                Composition c = source.next();
+                Future<ArrayList<ChordScore>> scores = pool.submit(() -> engine.score(c));
+                ScoringMetrics.enqueued();
+                inFlight.add(new Pending(index++, c, scores));
+            }
+            while (!inFlight.isEmpty()) emit(inFlight.poll(), sink);
+        } catch (RuntimeException | Error e) {
+            // emit() dequeues the one it polled even when it throws; drop the rest
+            for (Pending p : inFlight) {
+                p.scores.cancel(true);
+                ScoringMetrics.dequeued();
+            }
+            throw e;
+        }
+        return index;
+    }
+
+    public long score(Iterable<Composition> source, ResultSink sink) {
+        return score(source.iterator(), sink);
+    }
+
+    private static void emit(Pending p, ResultSink sink) {
+        ArrayList<ChordScore> scores;
+        try {
+            scores = p.scores.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scoring", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Scoring failed for composition " + p.index, e.getCause());
+        } finally {
+            ScoringMetrics.dequeued();
+        }
+        sink.accept(p.index, p.composition, scores);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
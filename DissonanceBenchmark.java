@@ -0,0 +1,208 @@
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Micro-benchmarks for the DissonanceCalculator kernels.
+ *
+ * Run with: java DissonanceBenchmark [--quick] [filter]
+ *
+ * Each case is warmed up, then timed in batches until the measurement window
+ * is used up. Reports throughput (ops/s) and allocation rate (bytes/op),
+ * measured with the per-thread allocation counter of the HotSpot
+ * ThreadMXBean.
+ */
+public class DissonanceBenchmark {
+
+    interface Kernel {
+        double run();
+    }
+
+    // Parameter grid
+    static final int[] PARTIAL_COUNTS = {2, 20, 200, 2000};
+    static final int[] CHORD_SIZES = {3, 4, 6};
+    static final double[] OVERTONES = {0.3, 0.6, 0.8, 1.0};
+
+    static long warmupNanos = 300_000_000L;
+    static long measureNanos = 1_000_000_000L;
+
+    static volatile double sink;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        String filter = null;
+        for (String arg : args) {
+            if (arg.equals("--quick")) {
+                warmupNanos = 50_000_000L;
+                measureNanos = 150_000_000L;
+            } else {
+                filter = arg;
+            }
+        }
+
+        checkKernel(RoughnessKernels.best());
+        checkFastExp();
+        System.out.printf("%-22s %-28s %16s %14s%n", "kernel", "params", "ops/s", "bytes/op");
+
+        for (int n : PARTIAL_COUNTS) {
+            for (double O : OVERTONES) {
+                double[][] spectrum = spectrum(n, O, 42);
+                double[] f = spectrum[0], a = spectrum[1];
+                String p = "partials=" + n + " O=" + O;
+                bench(filter, "sethares", p, () -> DissonanceCalculator.sethares(f, a));
+                bench(filter, "normalSethares", p, () -> DissonanceCalculator.normalSethares(f, a, O));
+                bench(filter, "rqa", p, () -> DissonanceCalculator.rqa(f, a));
+                bench(filter, "setharesPruned", p, () -> DissonanceCalculator.setharesPruned(
+                        f, a, DissonanceCalculator.DEFAULT_CUTOFF, 1e-4));
+                bench(filter, "normalSetharesPruned", p, () -> DissonanceCalculator.normalSetharesPruned(
+                        f, a, O, DissonanceCalculator.DEFAULT_CUTOFF, 1e-4));
+                bench(filter, "setharesFast", p, () -> DissonanceCalculator.sethares(
+                        f, a, DissonanceCalculator.FAST));
+                bench(filter, "normalSetharesFast", p, () -> DissonanceCalculator.normalSethares(
+                        f, a, O, DissonanceCalculator.FAST));
+                bench(filter, "setharesKernel", p, () -> RoughnessKernels.sethares(f, a));
+                bench(filter, "normalSetharesKernel", p, () -> RoughnessKernels.normalSethares(f, a, O));
+            }
+        }
+
+        for (int size : CHORD_SIZES) {
+            Random rnd = new Random(size);
+            int[] curr = chord(size, rnd);
+            int[] prev = chord(size, rnd);
+            int[] chroma = new int[12];
+            for (int note : curr) chroma[note % 12] = 1;
+            int[] keyChroma = DissonanceCalculator.buildKeyChroma("C", true);
+            String p = "chordSize=" + size;
+            bench(filter, "chromaToTIV", p, () -> DissonanceCalculator.chromaToTIV(chroma)[0]);
+            bench(filter, "ttpChord", p, () -> DissonanceCalculator.ttpChord(curr, prev, keyChroma));
+            bench(filter, "voiceLeading", p, () -> DissonanceCalculator.voiceLeading(prev, curr));
+
+            // Steady-state scoring path; fails if it allocates
+            TensionEngine engine = new TensionEngine();
+            ScoringWorkspace ws = new ScoringWorkspace();
+            ChordScore out = new ChordScore();
+            int keyIndex = TivTable.keyIndex("C", true);
+            int piano = InstrumentOvertones.PIANO;
+            Kernel scoreInto = () -> {
+                engine.scoreInto(curr, curr.length, prev, prev.length, keyIndex, piano, TensionEngine.MF, out, ws);
+                return out.holistic;
+            };
+            // A short --quick warmup can leave a one-off JIT transition inside the
+            // window; those do not repeat, allocation on the scoring path would
+            double bytes = bench(filter, "scoreInto", p, scoreInto);
+            for (int retry = 0; retry < 2 && bytes > 0; retry++) bytes = bench(filter, "scoreInto", p, scoreInto);
+            if (bytes > 0) {
+                throw new IllegalStateException("scoreInto allocates " + bytes + " bytes/op (" + p + ")");
+            }
+        }
+    }
+
+    // Returns the measured bytes/op, or NaN when the case is filtered out
+    static double bench(String filter, String name, String params, Kernel kernel) {
+        if (filter != null && !name.contains(filter)) return Double.NaN;
+
+        // Warmup, also used to size the batch to roughly 10 ms
+        int batch = 1;
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < warmupNanos) {
+            long t0 = System.nanoTime();
+            runBatch(kernel, batch);
+            if (System.nanoTime() - t0 < 10_000_000L && batch < (1 << 24)) batch <<= 1;
+        }
+
+        long thread = Thread.currentThread().getId();
+        long ops = 0;
+        THREADS.getThreadAllocatedBytes(thread); // the first call allocates
+        long bytes0 = THREADS.getThreadAllocatedBytes(thread);
+        long t0 = System.nanoTime();
+        long elapsed;
+        do {
+            runBatch(kernel, batch);
+            ops += batch;
+            elapsed = System.nanoTime() - t0;
+        } while (elapsed < measureNanos);
+        long bytes = THREADS.getThreadAllocatedBytes(thread) - bytes0;
+
+        System.out.printf("%-22s %-28s %16.1f %14.1f%n",
+                name, params, ops * 1e9 / elapsed, (double) bytes / ops);
+        return (double) bytes / ops;
+    }
+
+    private static void runBatch(Kernel kernel, int batch) {
+        double acc = 0;
+        for (int i = 0; i < batch; i++) acc += kernel.run();
+        sink = acc;
+    }
+
+    // Fails fast if the selected kernel drifts from the scalar one by more than RoughnessKernels.TOLERANCE
+    static void checkKernel(RoughnessKernel kernel) {
+        RoughnessKernel scalar = RoughnessKernels.scalar();
+        double worst = 0;
+        for (int n : PARTIAL_COUNTS) {
+            for (double O : OVERTONES) {
+                double[][] spectrum = spectrum(n, O, 7);
+                double[] f = spectrum[0], a = spectrum[1];
+                worst = Math.max(worst, relativeError(kernel.setharesSum(f, a, n), scalar.setharesSum(f, a, n)));
+                worst = Math.max(worst, relativeError(kernel.normalSum(f, a, n), scalar.normalSum(f, a, n)));
+            }
+        }
+        System.out.printf("roughness kernel: %s (max relative error vs scalar %.2e)%n", kernel, worst);
+        if (worst > RoughnessKernels.TOLERANCE) {
+            throw new IllegalStateException("Kernel " + kernel + " exceeds tolerance: " + worst);
+        }
+    }
+
+    // Fails fast if the FAST precision mode breaks its documented error bound
+    static void checkFastExp() {
+        double worstExp = 0;
+        for (double x = 0; x > -708; x -= 1e-3) {
+            double exact = Math.exp(x);
+            worstExp = Math.max(worstExp, relativeError(FastExp.exp(x), exact));
+        }
+        double worstSum = 0;
+        for (int n : PARTIAL_COUNTS) {
+            for (double O : OVERTONES) {
+                double[][] spectrum = spectrum(n, O, 11);
+                double[] f = spectrum[0], a = spectrum[1];
+                double ampPairs = 0;
+                for (int i = 0; i < n; i++) for (int j = i + 1; j < n; j++) ampPairs += a[i] * a[j];
+                double exact = DissonanceCalculator.sethares(f, a) / 1e9 / 50;
+                double fast = DissonanceCalculator.sethares(f, a, DissonanceCalculator.FAST) / 1e9 / 50;
+                if (ampPairs > 0) worstSum = Math.max(worstSum, Math.abs(fast - exact) / ampPairs);
+                exact = DissonanceCalculator.normalSethares(f, a, O);
+                fast = DissonanceCalculator.normalSethares(f, a, O, DissonanceCalculator.FAST);
+                worstSum = Math.max(worstSum, relativeError(fast, exact));
+            }
+        }
+        System.out.printf("fast exp: max relative error %.2e, max roughness error %.2e (bound %.0e)%n",
+                worstExp, worstSum, FastExp.MAX_RELATIVE_ERROR);
+        if (worstExp > FastExp.MAX_RELATIVE_ERROR || worstSum > 2 * FastExp.MAX_RELATIVE_ERROR) {
+            throw new IllegalStateException("FAST precision exceeds its error bound");
+        }
+    }
+
+    private static double relativeError(double x, double expected) {
+        return expected == 0 ? Math.abs(x) : Math.abs(x - expected) / Math.abs(expected);
+    }
+
+    // Harmonic-ish test spectrum: richer overtone values decay more slowly
+    static double[][] spectrum(int n, double O, long seed) {
+        Random rnd = new Random(seed);
+        double[] f = new double[n];
+        double[] a = new double[n];
+        for (int i = 0; i < n; i++) {
+            int note = 50 + rnd.nextInt(59);
+            int k = 1 + rnd.nextInt(16);
+            f[i] = TensionEngine.midiToFrequency(note) * k * (1 + 0.002 * rnd.nextGaussian());
+            a[i] = Math.pow(O, k - 1);
+        }
+        return new double[][]{f, a};
+    }
+
+    static int[] chord(int size, Random rnd) {
+        int[] notes = new int[size];
+        for (int i = 0; i < size; i++) notes[i] = 50 + rnd.nextInt(59);
+        return notes;
+    }
+}
@@ -1,8 +1,13 @@
 public class DissonanceCalculator {
 
     public static double sethares(double[] freqs, double[] amplitudes) {
+        return setharesSum(freqs, amplitudes, freqs.length)*1000000000*50;
+    }
+
+    // Raw pair sum behind sethares over the first n partials; the reference
+    // the RoughnessKernels are checked against
+    public static double setharesSum(double[] freqs, double[] amplitudes, int n) {
         double D = 0;
-        int n = freqs.length;
         for (int i = 0; i < n; i++) {
             for (int j = i + 1; j < n; j++) {
                 double f1 = freqs[i], f2 = freqs[j], a1 = amplitudes[i], a2 = amplitudes[j];
@@ -11,16 +16,55 @@ public class DissonanceCalculator {
                 D += a1 * a2 * (Math.exp(-3.5 * s * x) - Math.exp(-5.75 * s * x));
             }
         }
-   
+        return D;
+    }
+    
+    // Precision modes for sethares / normalSethares. FAST evaluates the curve with
+    // FastExp, so every exponential is off by at most FastExp.MAX_RELATIVE_ERROR and
+    // the raw pair sum by at most 2 * MAX_RELATIVE_ERROR * sum(a_i * a_j). Good
+    // enough for interactive scoring; published results should stay EXACT.
+    public static final int EXACT = 0;
+    public static final int FAST = 1;
 
-        return D*1000000000*50;
+    public static double sethares(double[] freqs, double[] amplitudes, int precision) {
+        if (precision == EXACT) return sethares(freqs, amplitudes);
+        double D = 0;
+        int n = freqs.length;
+        double s = 0.24;
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double y = s * Math.abs(freqs[j] - freqs[i]);
+                D += amplitudes[i] * amplitudes[j] * (FastExp.exp(-3.5 * y) - FastExp.exp(-5.75 * y));
+            }
+        }
+        return D * 1000000000 * 50;
+    }
 
+    public static double normalSethares(double[] freqs, double[] amplitudes, double O, int precision) {
+        if (precision == EXACT) return normalSethares(freqs, amplitudes, O);
+        int N = freqs.length;
+        double D = 0;
+        double s = 0.24;
+        for (int i = 0; i < N; i++) {
+            for (int j = i + 1; j < N; j++) {
+                double fMin = Math.min(freqs[i], freqs[j]);
+                double fMax = Math.max(freqs[i], freqs[j]);
+                double y = (fMax - fMin) / (s * fMin);
+                D += amplitudes[i] * amplitudes[j] * (FastExp.exp(-3.5 * y) - FastExp.exp(-5.75 * y));
+            }
+        }
+        return normalizeRoughness(D, N, O);
     }
-    
+
     public static double normalSethares(double[] freqs, double[] amplitudes, double O) {
     int N = freqs.length;
     if (N < 2) return 0; // nothing to compare
 
+    return normalizeRoughness(normalSetharesSum(freqs, amplitudes, N), N, O);
+}
+
+    // Raw pair sum behind normalSethares over the first N partials
+    public static double normalSetharesSum(double[] freqs, double[] amplitudes, int N) {
     double D = 0;
     for (int i = 0; i < N; i++) {
         for (int j = i + 1; j < N; j++) {
@@ -32,16 +76,160 @@ public class DissonanceCalculator {
             D += a1 * a2 * (Math.exp(-3.5 * x) - Math.exp(-5.75 * x));
         }
     }
+    return D;
+}
 
-    // Maximum roughness normalization factor
-    double maxPairs = (N * (N - 1)) / 2.0;
-    double maxRoughness = 0.0349 * maxPairs * Math.pow(6, O);
+    // Normalizes a raw normalSethares pair sum over N partials
+    public static double normalizeRoughness(double D, int N, double O) {
+        if (N < 2) return 0;
 
-    // Normalized and weighted Sethares score
-    double Rsethares = (D / maxRoughness) * 0.425 * O;
+        // Maximum roughness normalization factor
+        double maxPairs = (N * (N - 1)) / 2.0;
+        double maxRoughness = 0.0349 * maxPairs * Math.pow(6, O);
 
-    return Rsethares;
-}
+        // Normalized and weighted Sethares score
+        return (D / maxRoughness) * 0.425 * O;
+    }
+
+    // Cutoff-pruned roughness
+    //
+    // Both curves are a1*a2*g(y) with g(y) = exp(-3.5y) - exp(-5.75y), where y
+    // is the scaled distance between two partials: 0.24*|f2 - f1| in sethares
+    // and (fMax - fMin)/(0.24*fMin) in normalSethares. With the partials sorted
+    // by frequency, y only grows along a row, so a row stops at the first pair
+    // past the cutoff. Partials quieter than ampFloor are dropped up front.
+    //
+    // For non-negative amplitudes, with A the sum of all amplitudes and
+    // Adropped the sum of the dropped ones, the raw pair sum satisfies
+    //   0 <= Dexact - Dpruned <= exp(-3.5*cutoff) * A^2 / 2 + 0.181 * Adropped * A
+    // since g(y) <= exp(-3.5y) and g peaks at 0.181 (y = 0.22). The default
+    // cutoff of 5 keeps the first term below 2.6e-8 * A^2.
+
+    public static final double DEFAULT_CUTOFF = 5.0;
+
+    public static double setharesPruned(double[] freqs, double[] amplitudes, double cutoff, double ampFloor) {
+        double[][] kept = sortedAboveFloor(freqs, amplitudes, ampFloor);
+        return setharesSorted(kept[0], kept[1], kept[0].length, cutoff) * 1000000000 * 50;
+    }
+
+    public static double normalSetharesPruned(double[] freqs, double[] amplitudes, double O,
+                                              double cutoff, double ampFloor) {
+        int N = freqs.length;
+        if (N < 2) return 0;
+        double[][] kept = sortedAboveFloor(freqs, amplitudes, ampFloor);
+        // Normalize over the original partial count so scores stay comparable
+        return normalizeRoughness(normalSetharesSorted(kept[0], kept[1], kept[0].length, cutoff), N, O);
+    }
+
+    // Raw sethares pair sum over the first n partials, sorted by frequency
+    public static double setharesSorted(double[] freqs, double[] amplitudes, int n, double cutoff) {
+        double s = 0.24;
+        double D = 0;
+        for (int i = 0; i < n; i++) {
+            double f1 = freqs[i], a1 = amplitudes[i];
+            for (int j = i + 1; j < n; j++) {
+                double y = s * (freqs[j] - f1);
+                if (y > cutoff) break;
+                D += a1 * amplitudes[j] * (Math.exp(-3.5 * y) - Math.exp(-5.75 * y));
+            }
+        }
+        return D;
+    }
+
+    // Raw normalSethares pair sum over the first n partials, sorted by frequency
+    public static double normalSetharesSorted(double[] freqs, double[] amplitudes, int n, double cutoff) {
+        double s = 0.24;
+        double D = 0;
+        for (int i = 0; i < n; i++) {
+            double f1 = freqs[i], a1 = amplitudes[i];
+            double scale = 1 / (s * f1);
+            for (int j = i + 1; j < n; j++) {
+                double y = (freqs[j] - f1) * scale;
+                if (y > cutoff) break;
+                D += a1 * amplitudes[j] * (Math.exp(-3.5 * y) - Math.exp(-5.75 * y));
+            }
+        }
+        return D;
+    }
+
+    // Raw pair sums across two partial sets (every partial of one set against
+    // every partial of the other), for building chord roughness from notes
+    public static double setharesCross(double[] f1, double[] a1, double[] f2, double[] a2) {
+        double s = 0.24;
+        double D = 0;
+        for (int i = 0; i < f1.length; i++) {
+            for (int j = 0; j < f2.length; j++) {
+                double y = s * Math.abs(f2[j] - f1[i]);
+                D += a1[i] * a2[j] * (Math.exp(-3.5 * y) - Math.exp(-5.75 * y));
+            }
+        }
+        return D;
+    }
+
+    public static double normalSetharesCross(double[] f1, double[] a1, double[] f2, double[] a2) {
+        double s = 0.24;
+        double D = 0;
+        for (int i = 0; i < f1.length; i++) {
+            for (int j = 0; j < f2.length; j++) {
+                double fMin = Math.min(f1[i], f2[j]);
+                double fMax = Math.max(f1[i], f2[j]);
+                double y = (fMax - fMin) / (s * fMin);
+                D += a1[i] * a2[j] * (Math.exp(-3.5 * y) - Math.exp(-5.75 * y));
+            }
+        }
+        return D;
+    }
+
+    // Copies the partials at or above ampFloor and sorts them by frequency
+    private static double[][] sortedAboveFloor(double[] freqs, double[] amplitudes, double ampFloor) {
+        int n = 0;
+        for (double a : amplitudes) if (Math.abs(a) >= ampFloor) n++;
+        double[] f = new double[n];
+        double[] a = new double[n];
+        int k = 0;
+        for (int i = 0; i < freqs.length; i++) {
+            if (Math.abs(amplitudes[i]) >= ampFloor) {
+                f[k] = freqs[i];
+                a[k] = amplitudes[i];
+                k++;
+            }
+        }
+        sortByFrequency(f, a, 0, n - 1);
+        return new double[][]{f, a};
+    }
+
+    // Sorts parallel frequency/amplitude arrays in place over [lo, hi]
+    public static void sortByFrequency(double[] f, double[] a, int lo, int hi) {
+        while (hi - lo > 16) {
+            double pivot = f[(lo + hi) >>> 1];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (f[i] < pivot) i++;
+                while (f[j] > pivot) j--;
+                if (i <= j) {
+                    swap(f, a, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            // Recurse into the smaller half, loop on the larger one
+            if (j - lo < hi - i) {
+                sortByFrequency(f, a, lo, j);
+                lo = i;
+            } else {
+                sortByFrequency(f, a, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && f[j - 1] > f[j]; j--) swap(f, a, j - 1, j);
+        }
+    }
+
+    private static void swap(double[] f, double[] a, int i, int j) {
+        double t = f[i]; f[i] = f[j]; f[j] = t;
+        t = a[i]; a[i] = a[j]; a[j] = t;
+    }
 
 
     public static int[] buildKeyChroma(String key, boolean isMajor) {
@@ -52,11 +240,11 @@ public class DissonanceCalculator {
         return chroma;
     }
 
-    private static int noteNameToPitchClass(String n) {
+    public static int noteNameToPitchClass(String n) {
         return switch (n) {
-            case "C" -> 0; case "C#" -> 1; case "D" -> 2; case "D#" -> 3; case "E" -> 4;
-            case "F" -> 5; case "F#" -> 6; case "G" -> 7; case "G#" -> 8; case "A" -> 9;
-            case "A#" -> 10; case "B" -> 11; default -> 0;
+            case "C" -> 0; case "C#", "Db" -> 1; case "D" -> 2; case "D#", "Eb" -> 3; case "E" -> 4;
+            case "F" -> 5; case "F#", "Gb" -> 6; case "G" -> 7; case "G#", "Ab" -> 8; case "A" -> 9;
+            case "A#", "Bb" -> 10; case "B" -> 11; default -> 0;
         };
     }
 
@@ -92,53 +280,45 @@ public class DissonanceCalculator {
     }
 
     public static double voiceLeading(int[] chordPrev, int[] chordCurr) {
-        int len = Math.min(chordPrev.length, chordCurr.length);
-        double sum = 0;
-        for(int i=0;i<len;i++) sum += Math.abs(chordCurr[i]-chordPrev[i]);
-        return sum/len;
+        return voiceLeading(chordPrev, chordPrev.length, chordCurr, chordCurr.length);
+    }
+
+    // Optimal voice leading over the note sets, in semitones per voice (see VoiceLeading)
+    public static double voiceLeading(int[] chordPrev, int prevLen, int[] chordCurr, int currLen) {
+        return VoiceLeading.distance(chordPrev, prevLen, chordCurr, currLen);
     }
 
     public static double ttpChord(int[] chordCurr, int[] chordPrev, int[] keyChroma) {
+        return ttpChord(chordCurr, chordCurr.length, chordPrev, chordPrev != null ? chordPrev.length : -1);
+    }
+
+    // Allocation-free form; a null chordPrev or negative prevLen means no previous chord
+    public static double ttpChord(int[] chordCurr, int currLen, int[] chordPrev, int prevLen) {
         double wTonalDist = 0.4, wDiss = 0.425, wVoice = 0.15, wHier = 0.075;
-        int[] chromaCurr = chordToChroma(chordCurr);
-        int[] chromaPrev = chordPrev != null ? chordToChroma(chordPrev) : new int[12];
-        double[] tivCurr = chromaToTIV(chromaCurr);
-        double[] tivPrev = chordPrev != null ? chromaToTIV(chromaPrev) : new double[6];
-        double[] tivKey = chromaToTIV(keyChroma);
-        double tonalDist = chordPrev != null ? euclideanDistance(tivCurr, tivPrev) : 0;
-        double angle = angleBetweenTIVs(tivCurr, tivKey);
-        double diss = 0; for(double x : tivCurr) diss += x;
-        double vl = chordPrev != null ? voiceLeading(chordPrev, chordCurr) : 0;
+        // TIVs come from the precomputed table
+        boolean hasPrev = chordPrev != null && prevLen >= 0;
+        int maskCurr = TivTable.chordMask(chordCurr, currLen);
+        double tonalDist = hasPrev ? TivTable.distance(maskCurr, TivTable.chordMask(chordPrev, prevLen)) : 0;
+        double diss = TivTable.magnitudeSum(maskCurr);
+        double vl = hasPrev ? voiceLeading(chordPrev, prevLen, chordCurr, currLen) : 0;
         double hier = 1;
         return wTonalDist*tonalDist + wDiss*diss + wVoice*vl + wHier*hier;
     }
 
-    private static int[] chordToChroma(int[] chord) {
-        int[] chroma = new int[12];
-        for(int n : chord) chroma[n % 12] = 1;
-        return chroma;
+    public static double rqa(double[] freqs, double[] amps) {
+        return rqa(freqs, freqs.length);
     }
 
-
-
-
-
-
-
-
-
-    public static double rqa(double[] freqs, double[] amps) {
-        int N = freqs.length;
-        double[][] phase = new double[N][1];
-        for(int i=0;i<N;i++) phase[i][0]=freqs[i];
+    // Allocation-free form over the first N frequencies
+    public static double rqa(double[] freqs, int N) {
         double epsilon=1.0;
         double sum=0;
         for(int i=0;i<N;i++){
             for(int j=0;j<N;j++){
-                double dist=Math.abs(phase[i][0]-phase[j][0]);
+                double dist=Math.abs(freqs[i]-freqs[j]);
                 if(dist<epsilon) sum+=1;
             }
         }
         return sum/(N*N);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,198 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+
+/**
+ * Sethares-style dissonance curves (one interval swept in cents) and triad
+ * surfaces (two intervals swept over a grid) for the instruments of
+ * InstrumentOvertones.
+ *
+ * The partial set of the base note is built once; the upper tones are that
+ * spectrum transposed, as in Sethares' curves. normalSethares is invariant
+ * under scaling every frequency, so each tone's own roughness is the same at
+ * every interval and the cross roughness of two tones depends only on the
+ * interval between them. A sweep therefore needs one cross sum per grid step:
+ * the triad surface is assembled from the same cross curve instead of running
+ * a full evaluation per grid point.
+ *
+ * Work is cut into tiles that run on a fixed pool. Each finished tile is
+ * published to the listener (on the worker thread) while the rest are still
+ * running, so a UI can draw the result progressively.
+ */
+public class DissonanceCurves implements AutoCloseable {
+
+    /** Called once per finished tile; entries [from, to) of the result are final. */
+    public interface TileListener<T> {
+        void onTile(T result, int from, int to);
+    }
+
+    public static final class Curve {
+        public final double[] cents;
+        public final double[] roughness;
+
+        Curve(double[] cents) {
+            this.cents = cents;
+            this.roughness = new double[cents.length];
+        }
+
+        /** Indices of interior local minima, ascending. */
+        public int[] minima() {
+            ArrayList<Integer> found = new ArrayList<>();
+            for (int i = 1; i < roughness.length - 1; i++) {
+                if (roughness[i] < roughness[i - 1] && roughness[i] <= roughness[i + 1]) found.add(i);
+            }
+            return TensionEngine.toArray(found);
+        }
+
+        public void writeMinima(Writer out) throws IOException {
+            out.write("cents,roughness\n");
+            for (int i : minima()) out.write(cents[i] + "," + roughness[i] + "\n");
+            out.flush();
+        }
+    }
+
+    /** roughness[row * size + col] is the triad with intervals cents[row] and cents[col] over the base. */
+    public static final class Surface {
+        public final double[] cents;
+        public final double[] roughness;
+        public final int size;
+
+        Surface(double[] cents) {
+            this.cents = cents;
+            this.size = cents.length;
+            this.roughness = new double[size * size];
+        }
+
+        public double get(int row, int col) {
+            return roughness[row * size + col];
+        }
+
+        /** Interior grid points no higher than any of their 8 neighbours and lower than at least one, as {row, col}. */
+        public int[][] minima() {
+            ArrayList<int[]> found = new ArrayList<>();
+            for (int r = 1; r < size - 1; r++) {
+                for (int c = 1; c < size - 1; c++) {
+                    double v = get(r, c);
+                    boolean min = true, strict = false;
+                    for (int dr = -1; dr <= 1 && min; dr++) {
+                        for (int dc = -1; dc <= 1; dc++) {
+                            if (dr == 0 && dc == 0) continue;
+                            double w = get(r + dr, c + dc);
+                            if (w < v) {
+                                min = false;
+                                break;
+                            }
+                            if (w > v) strict = true;
+                        }
+                    }
+                    if (min && strict) found.add(new int[]{r, c});
+                }
+            }
+            return found.toArray(new int[0][]);
+        }
+
+        public void writeMinima(Writer out) throws IOException {
+            out.write("cents1,cents2,roughness\n");
+            for (int[] m : minima()) out.write(cents[m[0]] + "," + cents[m[1]] + "," + get(m[0], m[1]) + "\n");
+            out.flush();
+        }
+    }
+
+    private final TilePool pool;
+    private final int tileSize;
+
+    public DissonanceCurves() {
+        this(Runtime.getRuntime().availableProcessors(), 64);
+    }
+
+    /** @param tileSize grid points per tile; surfaces grow by bands this many rows and columns wide */
+    public DissonanceCurves(int threads, int tileSize) {
+        if (threads < 1 || tileSize < 1) throw new IllegalArgumentException("threads and tileSize must be >= 1");
+        this.tileSize = tileSize;
+        this.pool = new TilePool("dissonance-curves", threads);
+    }
+
+    /** Normalized roughness of two tones, the base note and the base transposed by 0..maxCents. */
+    public Curve curve(String instrument, int midi, String dynamic, double maxCents, double stepCents,
+                       TileListener<Curve> listener) {
+        Spectrum base = Spectrum.of(instrument, midi, dynamic);
+        double O = InstrumentOvertones.getOvertone(instrument);
+        int n = base.size();
+        double self = DissonanceCalculator.normalSetharesSorted(base.freqs, base.amplitudes, n, Double.POSITIVE_INFINITY);
+
+        Curve curve = new Curve(grid(maxCents, stepCents));
+        double[] cross = new double[curve.cents.length];
+        pool.run(curve.cents.length, tileSize, (from, to) -> {
+            cross(base, curve.cents, cross, from, to);
+            for (int i = from; i < to; i++) {
+                curve.roughness[i] = DissonanceCalculator.normalizeRoughness(2 * self + cross[i], 2 * n, O);
+            }
+            if (listener != null) listener.onTile(curve, from, to);
+        });
+        return curve;
+    }
+
+    /**
+     * Normalized roughness of triads: the base note plus two transpositions,
+     * each 0..maxCents above it. Grid point (r, c) needs the cross curve up to
+     * max(r, c), so the surface grows as a square from (0, 0): onTile(from, to)
+     * means every entry whose larger index is in [from, to) is final.
+     */
+    public Surface surface(String instrument, int midi, String dynamic, double maxCents, double stepCents,
+                           TileListener<Surface> listener) {
+        Spectrum base = Spectrum.of(instrument, midi, dynamic);
+        double O = InstrumentOvertones.getOvertone(instrument);
+        int n = base.size();
+        double self = DissonanceCalculator.normalSetharesSorted(base.freqs, base.amplitudes, n, Double.POSITIVE_INFINITY);
+
+        Surface surface = new Surface(grid(maxCents, stepCents));
+        int size = surface.size;
+        double[] cross = new double[size];
+        boolean[] done = new boolean[(size + tileSize - 1) / tileSize];
+        int[] ready = {0}; // length of the finished prefix of cross, guarded by done
+        pool.run(size, tileSize, (from, to) -> {
+            cross(base, surface.cents, cross, from, to);
+            int start, end;
+            synchronized (done) {
+                done[from / tileSize] = true;
+                start = ready[0];
+                while (ready[0] < size && done[ready[0] / tileSize]) ready[0] = Math.min(size, ready[0] + tileSize);
+                end = ready[0];
+            }
+            if (end == start) return;
+            // The band the prefix grew by: rows above it across its columns, then its own rows
+            for (int r = 0; r < end; r++) {
+                for (int c = r < start ? start : 0; c < end; c++) {
+                    // Each upper tone against the base, and against each other
+                    double D = 3 * self + cross[r] + cross[c] + cross[Math.abs(r - c)];
+                    surface.roughness[r * size + c] = DissonanceCalculator.normalizeRoughness(D, 3 * n, O);
+                }
+            }
+            if (listener != null) listener.onTile(surface, start, end);
+        });
+        return surface;
+    }
+
+    private static double[] grid(double maxCents, double stepCents) {
+        if (!(stepCents > 0) || maxCents < 0) throw new IllegalArgumentException("Invalid sweep: 0.." + maxCents + " by " + stepCents);
+        int points = (int) Math.floor(maxCents / stepCents + 1e-9) + 1;
+        double[] cents = new double[points];
+        for (int i = 0; i < points; i++) cents[i] = i * stepCents;
+        return cents;
+    }
+
+    // Cross roughness between the base spectrum and its transposition by grid intervals [from, to)
+    private static void cross(Spectrum base, double[] cents, double[] into, int from, int to) {
+        double[] shifted = new double[base.size()];
+        for (int i = from; i < to; i++) {
+            double ratio = Math.pow(2, cents[i] / 1200);
+            for (int k = 0; k < shifted.length; k++) shifted[k] = base.freqs[k] * ratio;
+            into[i] = DissonanceCalculator.normalSetharesCross(base.freqs, base.amplitudes, shifted, base.amplitudes);
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Table-driven exp for the non-positive arguments of the roughness curve.
+ *
+ * x is split as (k * 64 + j) * ln2/64 + r with 0 <= r < ln2/64; the result is
+ * 2^k * TABLE[j] * p(r), where p is the cubic Taylor polynomial of e^r. The
+ * truncation term r^4/24 bounds the relative error by MAX_RELATIVE_ERROR over
+ * the whole domain. Arguments below -708 (where exp underflows to subnormals)
+ * return 0; positive arguments fall back to Math.exp.
+ */
+public class FastExp {
+
+    public static final double MAX_RELATIVE_ERROR = 1e-9;
+
+    private static final double LN2_64 = Math.log(2) / 64;
+    private static final double INV_LN2_64 = 64 / Math.log(2);
+    private static final double[] TABLE = new double[64];
+
+    static {
+        for (int j = 0; j < 64; j++) TABLE[j] = Math.pow(2, j / 64.0);
+    }
+
+    public static double exp(double x) {
+        if (x > 0) return Math.exp(x);
+        if (x < -708) return 0;
+        int n = (int) Math.floor(x * INV_LN2_64);
+        double r = x - n * LN2_64;
+        double p = 1 + r * (1 + r * (0.5 + r * (1.0 / 6)));
+        double scale = Double.longBitsToDouble((long) ((n >> 6) + 1023) << 52);
+        return scale * TABLE[n & 63] * p;
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * In-place iterative radix-2 FFT with precomputed twiddles and bit-reversal
+ * order. One instance per transform size; transform() does not allocate.
+ */
+public class Fft {
+
+    private final int n;
+    private final double[] cos;
+    private final double[] sin;
+    private final int[] reversed;
+
+    public Fft(int n) {
+        if (n < 2 || Integer.bitCount(n) != 1) throw new IllegalArgumentException("FFT size must be a power of two: " + n);
+        this.n = n;
+        cos = new double[n / 2];
+        sin = new double[n / 2];
+        for (int i = 0; i < n / 2; i++) {
+            cos[i] = Math.cos(-2 * Math.PI * i / n);
+            sin[i] = Math.sin(-2 * Math.PI * i / n);
+        }
+        reversed = new int[n];
+        int bits = Integer.numberOfTrailingZeros(n);
+        for (int i = 0; i < n; i++) reversed[i] = Integer.reverse(i) >>> (32 - bits);
+    }
+
+    public int size() {
+        return n;
+    }
+
+    /** Forward transform of (re, im) in place. */
+    public void transform(double[] re, double[] im) {
+        for (int i = 0; i < n; i++) {
+            int j = reversed[i];
+            if (j > i) {
+                double t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
+        }
+        for (int len = 2; len <= n; len <<= 1) {
+            int half = len >>> 1;
+            int step = n / len;
+            for (int start = 0; start < n; start += len) {
+                for (int k = 0; k < half; k++) {
+                    double wr = cos[k * step], wi = sin[k * step];
+                    int a = start + k, b = a + half;
+                    double xr = re[b] * wr - im[b] * wi;
+                    double xi = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - xr;
+                    im[b] = im[a] - xi;
+                    re[a] += xr;
+                    im[a] += xi;
+                }
+            }
+        }
+    }
+}
@@ -29,6 +29,36 @@ public class InstrumentOvertones {
         instrumentOvertones.put("Voice", 0.7);
     }
 
+    // Fixed ordinal codes, used to index caches and compact encodings
+    public static final String[] INSTRUMENTS = {
+        "Bassoon", "Cello", "Clarinet", "Cymbals", "Double Bass", "Flute",
+        "French Horn", "Gongs", "Harpsichord", "Harp", "Oboe",
+        "Organ (Principal Stops)", "Organ (Reed Stops)", "Piano", "Snare",
+        "Saxophone", "Timpani", "Trumpet", "Viola", "Violin", "Voice"
+    };
+
+    public static final int PIANO = 13;
+
+    private static final Map<String, Integer> instrumentIndex = new HashMap<>();
+    private static final double[] overtoneByIndex = new double[INSTRUMENTS.length];
+
+    static {
+        for (int i = 0; i < INSTRUMENTS.length; i++) {
+            instrumentIndex.put(INSTRUMENTS[i], i);
+            overtoneByIndex[i] = instrumentOvertones.get(INSTRUMENTS[i]);
+        }
+    }
+
+    // Ordinal code for an instrument, Piano if not found (matches the 0.8 default)
+    public static int indexOf(String instrument) {
+        if (instrument == null) return PIANO;
+        return instrumentIndex.getOrDefault(instrument, PIANO);
+    }
+
+    public static double getOvertone(int index) {
+        return overtoneByIndex[index];
+    }
+
     // Get overtone rating for a given instrument
     public static double getOvertone(String instrument) {
         return instrumentOvertones.getOrDefault(instrument, 0.8); // default to 0.8 if not found
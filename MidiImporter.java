@@ -0,0 +1,411 @@
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiFileFormat;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.ShortMessage;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Streaming Standard MIDI File importer.
+ *
+ * Reads a file chord by chord: every track is read through its own small
+ * buffered channel and the tracks are merged by tick, so memory depends on
+ * the number of tracks, not on the length of the file. Note-ons on one
+ * channel that start within a small tick tolerance of each other form one
+ * Chord, so each chord has one instrument; chords are returned in order of
+ * their first note. Program changes pick the InstrumentOvertones name of each
+ * channel, the channel's note velocities pick the dynamics string, and the
+ * first key signature sets the key. The General MIDI percussion channel is
+ * skipped, since its key numbers select drums rather than pitches.
+ */
+public class MidiImporter implements AutoCloseable {
+
+    private static final int META = 0xFF;
+    private static final int META_KEY_SIGNATURE = 0x59;
+    private static final int PERCUSSION_CHANNEL = 9;
+
+    // General MIDI program number to InstrumentOvertones name
+    private static final String[] PROGRAMS = new String[128];
+
+    static {
+        fill(0, 5, "Piano");
+        fill(6, 7, "Harpsichord");
+        fill(8, 13, "Harp");
+        fill(14, 14, "Gongs");          // tubular bells
+        fill(15, 15, "Harp");
+        fill(16, 19, "Organ (Principal Stops)");
+        fill(20, 23, "Organ (Reed Stops)");
+        fill(24, 31, "Harp");           // guitars
+        fill(32, 39, "Double Bass");
+        fill(40, 40, "Violin");
+        fill(41, 41, "Viola");
+        fill(42, 42, "Cello");
+        fill(43, 43, "Double Bass");
+        fill(44, 45, "Violin");
+        fill(46, 46, "Harp");
+        fill(47, 47, "Timpani");
+        fill(48, 51, "Violin");
+        fill(52, 54, "Voice");
+        fill(55, 57, "Trumpet");
+        fill(58, 58, "French Horn");    // tuba
+        fill(59, 59, "Trumpet");
+        fill(60, 60, "French Horn");
+        fill(61, 63, "Trumpet");
+        fill(64, 67, "Saxophone");
+        fill(68, 69, "Oboe");
+        fill(70, 70, "Bassoon");
+        fill(71, 71, "Clarinet");
+        fill(72, 79, "Flute");
+        fill(80, 87, "Organ (Reed Stops)");      // synth leads
+        fill(88, 103, "Organ (Principal Stops)"); // synth pads and effects
+        fill(104, 108, "Harp");
+        fill(109, 109, "Organ (Reed Stops)");     // bagpipe
+        fill(110, 110, "Violin");
+        fill(111, 111, "Oboe");
+        fill(112, 114, "Gongs");
+        fill(115, 115, "Snare");
+        fill(116, 117, "Timpani");
+        fill(118, 118, "Snare");
+        fill(119, 119, "Cymbals");
+        fill(120, 127, "Piano");
+    }
+
+    private static void fill(int from, int to, String instrument) {
+        for (int p = from; p <= to; p++) PROGRAMS[p] = instrument;
+    }
+
+    // Key signature names by sharps/flats count (-7..7)
+    private static final String[] MAJOR_KEYS =
+            {"B", "Gb", "Db", "Ab", "Eb", "Bb", "F", "C", "G", "D", "A", "E", "B", "F#", "C#"};
+    private static final String[] MINOR_KEYS =
+            {"Ab", "Eb", "Bb", "F", "C", "G", "D", "A", "E", "B", "F#", "C#", "G#", "D#", "A#"};
+
+    private final TrackReader[] tracks;
+    private final int tolerance;
+    private final String[] channelInstrument = new String[16];
+
+    private String key;
+    private boolean isMajor = true;
+
+    // Chord being collected on each channel
+    private final long[] chordTick = new long[16];
+    private final boolean[][] chordNotes = new boolean[16][128];
+    private final int[] chordSize = new int[16];
+    private final int[] chordVelocity = new int[16];
+    private final String[] chordInstrument = new String[16];
+    private final ArrayDeque<Chord> finished = new ArrayDeque<>();
+
+    public MidiImporter(File file) throws IOException, InvalidMidiDataException {
+        this(file, -1);
+    }
+
+    /**
+     * @param tolerance ticks within which note-ons count as simultaneous;
+     *                  negative for 1/48 of a quarter note
+     */
+    public MidiImporter(File file, int tolerance) throws IOException, InvalidMidiDataException {
+        MidiFileFormat format = MidiSystem.getMidiFileFormat(file);
+        this.tolerance = tolerance >= 0 ? tolerance : Math.max(1, format.getResolution() / 48);
+        Arrays.fill(channelInstrument, "Piano");
+
+        // Locate the track chunks, then open one reader per track
+        ArrayList<long[]> chunks = new ArrayList<>();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.readInt() != 0x4D546864) throw new InvalidMidiDataException("No MThd header in " + file); // "MThd"
+            long headerLength = raf.readInt() & 0xFFFFFFFFL;
+            raf.seek(8 + headerLength);
+            while (raf.getFilePointer() + 8 <= raf.length()) {
+                int id = raf.readInt();
+                long length = raf.readInt() & 0xFFFFFFFFL;
+                if (id == 0x4D54726B) chunks.add(new long[]{raf.getFilePointer(), length}); // "MTrk"
+                raf.seek(raf.getFilePointer() + length);
+            }
+        }
+        tracks = new TrackReader[chunks.size()];
+        try {
+            for (int i = 0; i < tracks.length; i++) {
+                tracks[i] = new TrackReader(file, chunks.get(i)[0], chunks.get(i)[1]);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public boolean isMajor() {
+        return isMajor;
+    }
+
+    /** Returns the next chord, or null at the end of the file. */
+    public Chord nextChord() throws IOException {
+        while (true) {
+            if (!finished.isEmpty()) return finished.poll();
+            TrackReader t = earliest();
+            if (t == null) {
+                finishChords(Long.MAX_VALUE);
+                return finished.poll();
+            }
+            finishChords(t.tick);
+
+            int type = t.status & 0xF0;
+            int channel = t.status & 0x0F;
+            if (t.status == META) {
+                if (t.metaType == META_KEY_SIGNATURE && key == null && t.metaLength >= 2) {
+                    int sf = Math.max(-7, Math.min(7, t.meta[0]));
+                    isMajor = t.meta[1] == 0;
+                    key = isMajor ? MAJOR_KEYS[sf + 7] : MINOR_KEYS[sf + 7];
+                }
+            } else if (type == ShortMessage.PROGRAM_CHANGE) {
+                channelInstrument[channel] = PROGRAMS[t.data1];
+            } else if (type == ShortMessage.NOTE_ON && t.data2 > 0 && channel != PERCUSSION_CHANNEL) {
+                addNote(t.tick, t.data1, t.data2, channel);
+            }
+            t.advance();
+        }
+    }
+
+    // Queues every open chord that started more than tolerance ticks before tick, earliest first
+    private void finishChords(long tick) {
+        while (true) {
+            int first = -1;
+            for (int ch = 0; ch < 16; ch++) {
+                if (chordSize[ch] > 0 && tick - chordTick[ch] > tolerance
+                        && (first < 0 || chordTick[ch] < chordTick[first])) first = ch;
+            }
+            if (first < 0) return;
+            finished.add(takeChord(first));
+        }
+    }
+
+    private TrackReader earliest() {
+        TrackReader best = null;
+        for (TrackReader t : tracks) {
+            if (!t.done && (best == null || t.tick < best.tick)) best = t;
+        }
+        return best;
+    }
+
+    private void addNote(long tick, int note, int velocity, int channel) {
+        if (chordSize[channel] == 0) {
+            chordTick[channel] = tick;
+            chordInstrument[channel] = channelInstrument[channel];
+        }
+        if (!chordNotes[channel][note]) {
+            chordNotes[channel][note] = true;
+            chordSize[channel]++;
+        }
+        chordVelocity[channel] = Math.max(chordVelocity[channel], velocity);
+    }
+
+    private Chord takeChord(int channel) {
+        Chord chord = new Chord();
+        boolean[] notes = chordNotes[channel];
+        for (int n = 0; n < 128; n++) {
+            if (notes[n]) {
+                chord.midiNotes.add(n);
+                notes[n] = false;
+            }
+        }
+        chord.instrument = chordInstrument[channel];
+        chord.dynamics = velocityToDynamics(chordVelocity[channel]);
+        chordSize[channel] = 0;
+        chordVelocity[channel] = 0;
+        return chord;
+    }
+
+    public static String velocityToDynamics(int velocity) {
+        if (velocity < 32) return "pp";
+        if (velocity < 48) return "p";
+        if (velocity < 64) return "mp";
+        if (velocity < 80) return "mf";
+        if (velocity < 96) return "f";
+        return "ff";
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException first = null;
+        for (TrackReader t : tracks) {
+            if (t == null) continue;
+            try {
+                t.in.close();
+            } catch (IOException e) {
+                if (first == null) first = e;
+            }
+        }
+        if (first != null) throw first;
+    }
+
+    // Convenience
+
+    /** Reads a whole file into one Composition. */
+    public static Composition importFile(File file) throws IOException, InvalidMidiDataException {
+        try (MidiImporter importer = new MidiImporter(file)) {
+            Composition c = new Composition();
+            Chord chord;
+            while ((chord = importer.nextChord()) != null) c.chords.add(chord);
+            fillHeader(c, importer);
+            return c;
+        }
+    }
+
+    /**
+     * Streams every .mid/.midi file of a directory, in name order, as
+     * Compositions of at most maxChords chords each, for CorpusScorer. Only
+     * one file is open at a time and only one composition is held.
+     */
+    public static Iterator<Composition> corpus(File dir, int maxChords) {
+        File[] files = dir.listFiles((d, name) -> {
+            String n = name.toLowerCase();
+            return n.endsWith(".mid") || n.endsWith(".midi");
+        });
+        if (files == null) throw new UncheckedIOException(new IOException("Not a directory: " + dir));
+        Arrays.sort(files);
+
+        return new Iterator<>() {
+            int nextFile = 0;
+            MidiImporter current;
+            Composition pending;
+
+            @Override
+            public boolean hasNext() {
+                if (pending == null) pending = read();
+                return pending != null;
+            }
+
+            @Override
+            public Composition next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Composition c = pending;
+                pending = null;
+                return c;
+            }
+
+            private Composition read() {
+                try {
+                    while (true) {
+                        if (current == null) {
+                            if (nextFile >= files.length) return null;
+                            current = new MidiImporter(files[nextFile++]);
+                        }
+                        Composition c = new Composition();
+                        Chord chord;
+                        while (c.chords.size() < maxChords && (chord = current.nextChord()) != null) {
+                            c.chords.add(chord);
+                        }
+                        fillHeader(c, current);
+                        if (c.chords.size() < maxChords) {
+                            current.close();
+                            current = null;
+                        }
+                        if (!c.chords.isEmpty()) return c;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (InvalidMidiDataException e) {
+                    throw new UncheckedIOException(new IOException(files[nextFile - 1] + ": " + e.getMessage(), e));
+                }
+            }
+        };
+    }
+
+    private static void fillHeader(Composition c, MidiImporter importer) {
+        c.key = importer.key();
+        c.isMajor = importer.isMajor();
+        if (!c.chords.isEmpty()) c.instrument = c.chords.get(0).instrument;
+    }
+
+    // One track chunk, read event by event
+    private static class TrackReader {
+        final InputStream in;
+        long remaining;
+        boolean done;
+
+        long tick;
+        int status;
+        int runningStatus;
+        int data1, data2;
+        int metaType, metaLength;
+        final byte[] meta = new byte[8];
+
+        TrackReader(File file, long offset, long length) throws IOException {
+            FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            ch.position(offset);
+            in = new BufferedInputStream(Channels.newInputStream(ch), 8192);
+            remaining = length;
+            advance();
+        }
+
+        // Reads the next event; sets done at the end of the track
+        void advance() throws IOException {
+            if (remaining <= 0) {
+                done = true;
+                return;
+            }
+            tick += readVarLen();
+            int b = read();
+            if (b >= 0x80) {
+                status = b;
+                if (b < 0xF0) runningStatus = b;
+                b = -1;
+            } else {
+                status = runningStatus;
+            }
+
+            if (status == META) {
+                metaType = read();
+                metaLength = (int) readVarLen();
+                for (int i = 0; i < metaLength; i++) {
+                    int v = read();
+                    if (i < meta.length) meta[i] = (byte) v;
+                }
+                if (metaType == 0x2F) done = true; // end of track
+            } else if (status == 0xF0 || status == 0xF7) {
+                skip(readVarLen());
+            } else {
+                int type = status & 0xF0;
+                data1 = b >= 0 ? b : read();
+                boolean oneByte = type == ShortMessage.PROGRAM_CHANGE || type == ShortMessage.CHANNEL_PRESSURE;
+                data2 = oneByte ? 0 : read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (remaining-- <= 0) throw new EOFException("Truncated MIDI track");
+            int b = in.read();
+            if (b < 0) throw new EOFException("Truncated MIDI file");
+            return b;
+        }
+
+        private void skip(long n) throws IOException {
+            for (long i = 0; i < n; i++) read();
+        }
+
+        private long readVarLen() throws IOException {
+            long value = 0;
+            int b;
+            do {
+                b = read();
+                value = (value << 7) | (b & 0x7F);
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+}
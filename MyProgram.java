@@ -1,8 +1,16 @@
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MyProgram {
 
@@ -14,25 +22,24 @@ public class MyProgram {
     ArrayList<Integer> currentChordNotes;
     int currentChordColumn = 1;
     private double[][] gridData = new double[5][12];
+    private JLabel[][] gridLabels = new JLabel[5][12];
+    private final TensionEngine engine = new TensionEngine();
+    private final ScoringService scoring = new ScoringService(engine, 30);
+    private final WeightCalibrator calibrator = new WeightCalibrator();
+    private static final File PROFILE_FILE = new File("weights.properties");
+    private static final File RATINGS_FILE = new File("ratings.log");
+    private static final double DEFAULT_RATING = 5.0;       // what the rating fields start at
+    private static final int MIN_CALIBRATION_RATINGS = 8;   // entered ratings needed before refitting
+    private final long session = System.currentTimeMillis();
+    private final ExecutorService calibration = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "weight-calibration");
+        t.setDaemon(true);
+        return t;
+    });
+    private HashMap<String, Double> fittedRatings; // ratings behind the current weights, calibration thread only
 
     //Utility Methods
 
-    private double dynamicsToAmplitude(String dyn) {
-        return switch (dyn) {
-            case "pp" -> 0.2;
-            case "p"  -> 0.4;
-            case "mp" -> 0.6;
-            case "mf" -> 0.8;
-            case "f"  -> 1.0;
-            case "ff" -> 1.2;
-            default   -> 0.8;
-        };
-    }
-
-    private double midiToFrequency(int midi) {
-        return 440.0 * Math.pow(2, (midi - 69) / 12.0);
-    }
-
     private String extractBase(String noteName) {
         return noteName.replaceAll("\\d", "");
     }
@@ -40,6 +47,7 @@ public class MyProgram {
     // Constructor
 
     public MyProgram() {
+        loadProfile();
         SwingUtilities.invokeLater(() -> {
             frame = new JFrame("Harmony Navigator");
             frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -153,6 +161,7 @@ public class MyProgram {
             label.setBackground(Color.WHITE);
             label.setFont(new Font("Serif", Font.BOLD, 14));
             gridPanel.add(label);
+            gridLabels[0][c] = label;
         }
 
         String[] rows = {"Sethares", "TTP", "RQA", "Holistic"};
@@ -164,6 +173,7 @@ public class MyProgram {
                 label.setOpaque(true);
                 label.setBackground(Color.WHITE);
                 gridPanel.add(label);
+                gridLabels[r + 1][c] = label;
             }
         }
 
@@ -201,6 +211,7 @@ public class MyProgram {
             if (!currentChordNotes.contains(midi)) {
                 currentChordNotes.add(midi);
                 staff.setPreviewChord(currentChordNotes);
+                rescore();
             }
         });
 
@@ -216,19 +227,181 @@ public class MyProgram {
             if (!currentChordNotes.isEmpty()) {
                 currentChordNotes.remove(currentChordNotes.size() - 1);
                 staff.setPreviewChord(currentChordNotes);
+                rescore();
             }
         });
 
+        doneBtn.addActionListener(e -> {
+            if (currentComposition.key == null || currentChordNotes.isEmpty()) return;
+
+            Chord chord = new Chord();
+            chord.midiNotes.addAll(currentChordNotes);
+            chord.instrument = currentComposition.instrument;
+            currentComposition.chords.add(chord);
+
+            staff.addFinalChord(currentChordNotes, chord);
+            currentChordNotes.clear();
+            staff.clearPreview();
+            rescore();
+        });
+
         clearBtn.addActionListener(e -> {
             currentChordNotes.clear();
             currentComposition.chords.clear();
             staff.clearAll();
             currentChordColumn = 1;
+            rescore();
         });
 
         return panel;
     }
 
+    // Dissonance Grid
+
+    // Scores the committed chords plus the chord being built, off the EDT
+    private void rescore() {
+        Composition snapshot = currentComposition.copy();
+        if (!currentChordNotes.isEmpty()) {
+            Chord preview = new Chord();
+            preview.midiNotes.addAll(currentChordNotes);
+            preview.instrument = currentComposition.instrument;
+            snapshot.chords.add(preview);
+        }
+        scoring.submit(snapshot, (generation, scores) -> SwingUtilities.invokeLater(() -> {
+            if (generation != scoring.latestGeneration()) return;
+            clearScores();
+            for (int i = 0; i < scores.size(); i++) showScore(i + 1, scores.get(i));
+        }));
+    }
+
+    private void showScore(int column, ChordScore score) {
+        if (column < 1 || column >= 12) return;
+        gridData[1][column] = score.sethares;
+        gridData[2][column] = score.ttp;
+        gridData[3][column] = score.rqa;
+        gridData[4][column] = score.holistic;
+        for (int r = 1; r < 5; r++) {
+            gridLabels[r][column].setText(String.format("%.3f", gridData[r][column]));
+        }
+    }
+
+    private void clearScores() {
+        for (int r = 1; r < 5; r++) {
+            for (int c = 1; c < 12; c++) {
+                gridData[r][c] = 0;
+                gridLabels[r][c].setText("");
+            }
+        }
+    }
+
+    // Weight calibration
+
+    private void loadProfile() {
+        if (!PROFILE_FILE.exists()) return;
+        try {
+            WeightProfile.load(PROFILE_FILE).applyTo(engine);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Ignoring weight profile " + PROFILE_FILE + ": " + e.getMessage());
+        }
+    }
+
+    // Logs the ratings and refits the weights on the calibration thread. The
+    // ratings are copied here on the EDT; the grid is rescored once new weights
+    // are in place.
+    private void submitRatings(ArrayList<ArrayList<Integer>> intervals, ArrayList<ListenerGraph.IntervalData> ratings) {
+        ArrayList<ArrayList<Integer>> notes = new ArrayList<>();
+        String[] labels = new String[ratings.size()];
+        double[] values = new double[ratings.size()];
+        boolean[] touched = new boolean[ratings.size()];
+        for (int i = 0; i < ratings.size(); i++) {
+            notes.add(new ArrayList<>(intervals.get(i)));
+            labels[i] = ratings.get(i).label;
+            values[i] = ratings.get(i).rating;
+            touched[i] = ratings.get(i).touched;
+        }
+        calibration.execute(() -> {
+            logRatings(notes, labels, values, touched);
+            if (calibrate(notes, labels)) SwingUtilities.invokeLater(this::rescore);
+        });
+    }
+
+    // Refits the holistic weights to the rating log, using the last rating each
+    // session gave each interval. Nothing is applied or saved until at least
+    // MIN_CALIBRATION_RATINGS of them exist, or when they have not changed
+    // since the last fit. Returns whether the weights changed.
+    private boolean calibrate(ArrayList<ArrayList<Integer>> intervals, String[] labels) {
+        HashMap<String, Integer> byLabel = new HashMap<>();
+        for (int i = 0; i < labels.length; i++) byLabel.put(labels[i], i);
+        HashMap<String, Double> latest = new HashMap<>(); // "session/ratio" -> rating
+        try {
+            RatingLog.read(RATINGS_FILE.toPath(), (timestamp, session, num, den, rating, model) -> {
+                String label = num + ":" + den;
+                if (byLabel.containsKey(label)) latest.put(session + "/" + label, (double) rating);
+            });
+        } catch (IOException e) {
+            System.err.println("Could not read rating log: " + e.getMessage());
+            return false;
+        }
+        if (latest.size() < MIN_CALIBRATION_RATINGS || latest.equals(fittedRatings)) return false;
+
+        calibrator.clear();
+        for (Map.Entry<String, Double> rated : latest.entrySet()) {
+            String label = rated.getKey().substring(rated.getKey().indexOf('/') + 1);
+            calibrator.add(intervalChord(intervals.get(byLabel.get(label))), null, "C", true, rated.getValue());
+        }
+        WeightProfile profile = calibrator.fit();
+        profile.applyTo(engine);
+        fittedRatings = latest;
+        try {
+            profile.save(PROFILE_FILE);
+        } catch (IOException e) {
+            System.err.println("Could not save weight profile: " + e.getMessage());
+        }
+        return true;
+    }
+
+    // Appends the ratings the listener has entered, with the current model
+    // score of each, to the rating log; fields never edited are left out
+    private void logRatings(ArrayList<ArrayList<Integer>> intervals, String[] labels, double[] ratings,
+                            boolean[] touched) {
+        try (RatingLog log = new RatingLog(RATINGS_FILE.toPath())) {
+            for (int i = 0; i < intervals.size(); i++) {
+                if (!touched[i]) continue;
+                String[] ratio = labels[i].split(":");
+                double model = engine.scoreChord(intervalChord(intervals.get(i)), null, "C", true).holistic;
+                log.append(session, Integer.parseInt(ratio[0]), Integer.parseInt(ratio[1]), ratings[i], model);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write rating log: " + e.getMessage());
+        }
+    }
+
+    private static Chord intervalChord(ArrayList<Integer> notes) {
+        Chord chord = new Chord();
+        chord.midiNotes.addAll(notes);
+        return chord;
+    }
+
+    // Runs onEdit whenever the field's text changes
+    private static void onEdit(JTextField field, Runnable onEdit) {
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                onEdit.run();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                onEdit.run();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                onEdit.run();
+            }
+        });
+    }
+
     //Listener Feedback 
 private JPanel createListenerFeedbackPanel() {
     JPanel panel = new JPanel(new CardLayout());
@@ -239,7 +412,7 @@ private JPanel createListenerFeedbackPanel() {
     String[] intervals = {"7:4", "9:5", "8:5", "5:3", "4:3", "3:2", "5:4", "2:1"};
     ArrayList<ListenerGraph.IntervalData> intervalData = new ArrayList<>();
     for (String s : intervals) {
-        intervalData.add(new ListenerGraph.IntervalData(s, 5.0, 0.0)); 
+        intervalData.add(new ListenerGraph.IntervalData(s, DEFAULT_RATING, 0.0)); 
     }
 
     // PAGE 1: Staff + Textboxes + Done + Piano
@@ -289,8 +462,10 @@ private JPanel createListenerFeedbackPanel() {
         page1.add(lbl);
 
         // Text box for user rating
-        JTextField tf = new JTextField(String.valueOf(intervalData.get(i).rating));
+        ListenerGraph.IntervalData data = intervalData.get(i);
+        JTextField tf = new JTextField(String.valueOf(data.rating));
         tf.setBounds(170 + i * spacing + spacing / 4, textY, 50, 25);
+        onEdit(tf, () -> data.touched = true);
         page1.add(tf);
         inputFields.add(tf);
     }
@@ -341,6 +516,7 @@ private JPanel createListenerFeedbackPanel() {
 
     // Text boxes for corrections
     ArrayList<JTextField> correctionFields = new ArrayList<>();
+    boolean[] corrected = new boolean[testIntervals.size()];
     int page2Spacing = 310 / testIntervals.size();
     int label2Y = 70 + staffHeight + 5;
     int text2Y = label2Y + 20;
@@ -353,6 +529,8 @@ private JPanel createListenerFeedbackPanel() {
 
         JTextField tf = new JTextField(String.valueOf(testIntervals.get(i).rating));
         tf.setBounds(310 + i * page2Spacing + page2Spacing / 4, text2Y + 430, 50, 25);
+        int field = i;
+        onEdit(tf, () -> corrected[field] = true);
         page2.add(tf);
         correctionFields.add(tf);
     }
@@ -384,9 +562,11 @@ private JPanel createListenerFeedbackPanel() {
                         "Invalid Input",
                         JOptionPane.ERROR_MESSAGE);
                 inputFields.get(i).setText("5.0");
+                intervalData.get(i).touched = false;
                 return;
             }
         }
+        submitRatings(demoIntervals, intervalData);
         staff2.repaint();
         cl.show(panel, "validate");
     });
@@ -400,19 +580,23 @@ private JPanel createListenerFeedbackPanel() {
 
     noBtn.addActionListener(e -> {
         for (int i = 0; i < correctionFields.size(); i++) {
+            if (!corrected[i]) continue; // keep the page 1 rating
             try {
                 double v = Double.parseDouble(correctionFields.get(i).getText());
                 if (v < 1.0 || v > 10.0) throw new NumberFormatException();
                 testIntervals.get(i).rating = v;
+                testIntervals.get(i).touched = true;
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(frame,
                         "Ratings must be between 1.0 and 10.0",
                         "Invalid Input",
                         JOptionPane.ERROR_MESSAGE);
                 correctionFields.get(i).setText("5.0");
+                corrected[i] = false;
                 return;
             }
         }
+        submitRatings(demoIntervals, intervalData);
         graph.repaint();
     });
 
@@ -430,6 +614,7 @@ private class ListenerGraph extends JPanel {
         public String label;      
         public double rating;     
         public double complexity;
+        public boolean touched;   // the listener has edited this rating
 
         public IntervalData(String label, double rating, double complexity) {
             this.label = label;
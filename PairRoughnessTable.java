@@ -0,0 +1,105 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lazily filled roughness table between the partial sets of two notes.
+ *
+ * The roughness of a chord is the sum of the roughness within each note plus
+ * the roughness across each pair of notes, so once those note-level sums are
+ * known a chord costs O(notes^2) lookups instead of a pair loop over all of
+ * its partials. One table exists per (instrument, dynamic) and covers the
+ * PianoPanel range; notes outside it are computed directly.
+ *
+ * Both raw sums are kept: the sethares one and the normalSethares one.
+ */
+public class PairRoughnessTable {
+
+    public static final int MIDI_START = 50; // D3
+    public static final int MIDI_END = 108;  // C8
+    private static final int RANGE = MIDI_END - MIDI_START + 1;
+
+    public static final int SETHARES = 0;
+    public static final int NORMAL = 1;
+
+    private static final long EMPTY = Double.doubleToRawLongBits(Double.NaN);
+
+    private static final AtomicReferenceArray<PairRoughnessTable> TABLES = new AtomicReferenceArray<>(
+            InstrumentOvertones.INSTRUMENTS.length * TensionEngine.DYNAMICS.length);
+
+    private final int instrument;
+    private final int dynamic;
+    // [(lo * RANGE + hi) * 2 + kind], lo <= hi; the diagonal holds within-note sums
+    private final AtomicLongArray sums = new AtomicLongArray(RANGE * RANGE * 2);
+
+    private PairRoughnessTable(int instrument, int dynamic) {
+        this.instrument = instrument;
+        this.dynamic = dynamic;
+        for (int i = 0; i < sums.length(); i++) sums.set(i, EMPTY);
+    }
+
+    public static PairRoughnessTable get(int instrument, int dynamic) {
+        int idx = instrument * TensionEngine.DYNAMICS.length + dynamic;
+        PairRoughnessTable t = TABLES.get(idx);
+        if (t == null) {
+            TABLES.compareAndSet(idx, null, new PairRoughnessTable(instrument, dynamic));
+            t = TABLES.get(idx);
+        }
+        return t;
+    }
+
+    /**
+     * Raw sethares and normalSethares sums over all partials of the first n
+     * notes, written to out[SETHARES] and out[NORMAL]. Returns the total
+     * number of partials, which normalSethares normalization needs.
+     */
+    public int chordSums(int[] notes, int n, double[] out) {
+        double sethares = 0, normal = 0;
+        int partials = 0;
+        for (int i = 0; i < n; i++) {
+            partials += Spectrum.get(instrument, notes[i], dynamic).size();
+            sethares += pair(notes[i], notes[i], SETHARES);
+            normal += pair(notes[i], notes[i], NORMAL);
+            for (int j = i + 1; j < n; j++) {
+                sethares += cross(notes[i], notes[j], SETHARES);
+                normal += cross(notes[i], notes[j], NORMAL);
+            }
+        }
+        out[SETHARES] = sethares;
+        out[NORMAL] = normal;
+        return partials;
+    }
+
+    /**
+     * Raw sum between notes a and b; for a == b, the sum within the note.
+     * A repeated note in a chord uses cross(a, a), which is twice that.
+     */
+    public double pair(int a, int b, int kind) {
+        int lo = Math.min(a, b), hi = Math.max(a, b);
+        if (lo < MIDI_START || hi > MIDI_END) return compute(lo, hi, kind);
+
+        int idx = ((lo - MIDI_START) * RANGE + (hi - MIDI_START)) * 2 + kind;
+        long bits = sums.get(idx);
+        if (bits != EMPTY) return Double.longBitsToDouble(bits);
+        double v = compute(lo, hi, kind);
+        sums.set(idx, Double.doubleToRawLongBits(v));
+        return v;
+    }
+
+    public double cross(int a, int b, int kind) {
+        return a == b ? 2 * pair(a, a, kind) : pair(a, b, kind);
+    }
+
+    private double compute(int a, int b, int kind) {
+        Spectrum sa = Spectrum.get(instrument, a, dynamic);
+        if (a == b) {
+            double inf = Double.POSITIVE_INFINITY;
+            return kind == SETHARES
+                    ? DissonanceCalculator.setharesSorted(sa.freqs, sa.amplitudes, sa.size(), inf)
+                    : DissonanceCalculator.normalSetharesSorted(sa.freqs, sa.amplitudes, sa.size(), inf);
+        }
+        Spectrum sb = Spectrum.get(instrument, b, dynamic);
+        return kind == SETHARES
+                ? DissonanceCalculator.setharesCross(sa.freqs, sa.amplitudes, sb.freqs, sb.amplitudes)
+                : DissonanceCalculator.normalSetharesCross(sa.freqs, sa.amplitudes, sb.freqs, sb.amplitudes);
+    }
+}
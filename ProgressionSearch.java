@@ -0,0 +1,300 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Finds the N-chord progressions through a chord vocabulary with the lowest
+ * (or highest) total holistic tension in one key.
+ *
+ * A chord's score depends only on the chord before it, so the total is a sum
+ * of transition costs and a K-best Viterbi pass finds the exact top-K paths
+ * in O(N * V^2 * K) instead of V^N. The V x V transition table is scored once
+ * per search object (through the engine, so a ScoreCache set on it is reused
+ * for the context-free parts) and shared by every later search. The tables
+ * hold holistic scores, so they are thrown away and rebuilt when a search
+ * finds the engine's weights changed since they were scored. Table rows
+ * and the per-step chord updates are spread over a fixed pool.
+ *
+ * Searches take a time budget. If it runs out before the exact pass is done,
+ * the best partial paths found so far are finished greedily and the result is
+ * marked incomplete.
+ */
+public class ProgressionSearch implements AutoCloseable {
+
+    public static final class Path {
+        public final CompactChord[] chords;
+        public final double tension;
+
+        Path(CompactChord[] chords, double tension) {
+            this.chords = chords;
+            this.tension = tension;
+        }
+    }
+
+    public static final class Result {
+        /** Best first (lowest tension when minimizing, highest when maximizing). */
+        public final ArrayList<Path> paths;
+        /** False when the time budget ran out and paths were completed greedily. */
+        public final boolean exact;
+
+        Result(ArrayList<Path> paths, boolean exact) {
+            this.paths = paths;
+            this.exact = exact;
+        }
+    }
+
+    private static final int TILE = 16;
+    private static final int GREEDY_CANDIDATES = 32; // chords tried per step once the deadline has passed
+
+    private final TensionEngine engine;
+    private final CompactChord[] vocabulary;
+    private final int[][] notes;
+    private final int keyIndex;
+    private final TilePool pool;
+    private boolean allowRepeats;
+
+    private final double[] first;                       // tension of each chord with no previous chord
+    private final AtomicReferenceArray<double[]> rows;  // rows[p][c]: tension of c after p
+    private double[] weights;                           // engine weights first and rows were scored with
+
+    public ProgressionSearch(TensionEngine engine, List<CompactChord> vocabulary, String key, boolean isMajor) {
+        this(engine, vocabulary, key, isMajor, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ProgressionSearch(TensionEngine engine, List<CompactChord> vocabulary, String key, boolean isMajor,
+                             int threads) {
+        if (vocabulary.isEmpty()) throw new IllegalArgumentException("Empty chord vocabulary");
+        if (threads < 1) throw new IllegalArgumentException("threads must be >= 1");
+        this.engine = engine;
+        this.vocabulary = vocabulary.toArray(new CompactChord[0]);
+        this.keyIndex = TivTable.keyIndex(key, isMajor);
+        this.pool = new TilePool("progression-search", threads);
+
+        int V = this.vocabulary.length;
+        notes = new int[V][];
+        first = new double[V];
+        rows = new AtomicReferenceArray<>(V);
+        for (int v = 0; v < V; v++) notes[v] = this.vocabulary[v].notes();
+        rebuild(engine.getWeights());
+    }
+
+    /** Whether a chord may follow itself; off by default, since repeats trivially minimize tension. */
+    public void setAllowRepeats(boolean allowRepeats) {
+        this.allowRepeats = allowRepeats;
+    }
+
+    public int vocabularySize() {
+        return vocabulary.length;
+    }
+
+    /**
+     * Returns up to k progressions of `length` chords, ordered best first.
+     * budgetMillis bounds the wall time of the search (0 or less for none).
+     */
+    public Result search(int length, int k, boolean maximize, long budgetMillis) {
+        if (length < 1 || k < 1) throw new IllegalArgumentException("length and k must be >= 1");
+        long deadline = budgetMillis > 0 ? System.nanoTime() + budgetMillis * 1_000_000 : Long.MAX_VALUE;
+        double sign = maximize ? -1 : 1; // the search always minimizes sign * tension
+        int V = vocabulary.length;
+        double[] w = engine.getWeights();
+        if (!Arrays.equals(w, weights)) rebuild(w);
+
+        // Transition rows in parallel, stopping at the deadline
+        pool.run(V, TILE, (from, to) -> {
+            for (int p = from; p < to && System.nanoTime() < deadline; p++) row(p);
+        });
+
+        // Step 0: every chord on its own
+        ArrayList<Step> steps = new ArrayList<>();
+        Step step = new Step(V, k);
+        for (int c = 0; c < V; c++) step.offer(c, sign * first[c], -1, -1);
+        steps.add(step);
+
+        boolean exact = true;
+        for (int t = 1; t < length; t++) {
+            if (System.nanoTime() >= deadline || !rowsReady()) {
+                exact = false;
+                break;
+            }
+            Step prev = step;
+            Step next = new Step(V, k);
+            pool.run(V, TILE, (from, to) -> {
+                for (int c = from; c < to; c++) {
+                    for (int p = 0; p < V; p++) {
+                        if (p == c && !allowRepeats) continue;
+                        double edge = sign * rows.get(p)[c];
+                        for (int r = 0; r < prev.count[p]; r++) {
+                            next.offer(c, prev.cost[p * k + r] + edge, p, r);
+                        }
+                    }
+                }
+            });
+            steps.add(next);
+            step = next;
+        }
+
+        ArrayList<Path> paths = best(steps, k, sign);
+        if (!exact) paths = completeGreedily(paths, length, k, sign, deadline);
+        return new Result(paths, exact);
+    }
+
+    // Top-k partial paths ending at each chord for one step
+    private static final class Step {
+        final int k;
+        final int[] count;
+        final double[] cost;
+        final int[] backChord;
+        final int[] backRank;
+
+        Step(int V, int k) {
+            this.k = k;
+            count = new int[V];
+            cost = new double[V * k];
+            backChord = new int[V * k];
+            backRank = new int[V * k];
+        }
+
+        // Sorted insertion into chord c's list; each c is only touched by one tile
+        void offer(int c, double value, int fromChord, int fromRank) {
+            int base = c * k, n = count[c];
+            if (n == k && value >= cost[base + k - 1]) return;
+            int i = Math.min(n, k - 1);
+            while (i > 0 && cost[base + i - 1] > value) {
+                cost[base + i] = cost[base + i - 1];
+                backChord[base + i] = backChord[base + i - 1];
+                backRank[base + i] = backRank[base + i - 1];
+                i--;
+            }
+            cost[base + i] = value;
+            backChord[base + i] = fromChord;
+            backRank[base + i] = fromRank;
+            if (n < k) count[c] = n + 1;
+        }
+    }
+
+    // The k best paths ending at the last step, traced back to step 0
+    private ArrayList<Path> best(ArrayList<Step> steps, int k, double sign) {
+        Step last = steps.get(steps.size() - 1);
+        int V = vocabulary.length;
+        Step top = new Step(1, k);
+        for (int c = 0; c < V; c++) {
+            for (int r = 0; r < last.count[c]; r++) top.offer(0, last.cost[c * k + r], c, r);
+        }
+
+        ArrayList<Path> paths = new ArrayList<>();
+        for (int i = 0; i < top.count[0]; i++) {
+            CompactChord[] chords = new CompactChord[steps.size()];
+            int c = top.backChord[i], r = top.backRank[i];
+            for (int t = steps.size() - 1; t >= 0; t--) {
+                chords[t] = vocabulary[c];
+                Step s = steps.get(t);
+                int nc = s.backChord[c * k + r], nr = s.backRank[c * k + r];
+                c = nc;
+                r = nr;
+            }
+            paths.add(new Path(chords, sign * top.cost[i]));
+        }
+        return paths;
+    }
+
+    // Extends each partial path to full length with its cheapest next chord.
+    // Rows already built are used as they are; missing ones are not scored
+    // here but estimated with transition(). Until the deadline every chord is
+    // a candidate, after it only the GREEDY_CANDIDATES best on their own.
+    private ArrayList<Path> completeGreedily(ArrayList<Path> partial, int length, int k, double sign, long deadline) {
+        double[] w = weights;
+        int V = vocabulary.length;
+        Integer[] byFirst = new Integer[V];
+        for (int v = 0; v < V; v++) byFirst[v] = v;
+        Arrays.sort(byFirst, (a, b) -> Double.compare(sign * first[a], sign * first[b]));
+
+        ArrayList<Path> done = new ArrayList<>();
+        for (Path path : partial) {
+            CompactChord[] chords = new CompactChord[length];
+            System.arraycopy(path.chords, 0, chords, 0, path.chords.length);
+            double total = sign * path.tension;
+            int c = indexOf(chords[path.chords.length - 1]);
+            for (int t = path.chords.length; t < length; t++) {
+                double[] row = rows.get(c);
+                int candidates = row != null || System.nanoTime() < deadline ? V : Math.min(V, GREEDY_CANDIDATES + 1);
+                int bestNext = -1;
+                double bestCost = 0;
+                for (int i = 0; i < candidates; i++) {
+                    int n = byFirst[i];
+                    if (n == c && !allowRepeats) continue;
+                    double cost = sign * (row != null ? row[n] : transition(n, c, w));
+                    if (bestNext < 0 || cost < bestCost) {
+                        bestNext = n;
+                        bestCost = cost;
+                    }
+                }
+                if (bestNext < 0) { // one-chord vocabulary
+                    bestNext = c;
+                    bestCost = sign * (row != null ? row[c] : transition(c, c, w));
+                }
+                total += bestCost;
+                chords[t] = vocabulary[bestNext];
+                c = bestNext;
+            }
+            done.add(new Path(chords, sign * total));
+        }
+        done.sort((a, b) -> Double.compare(sign * a.tension, sign * b.tension));
+        return done;
+    }
+
+    // Tension of c after p without scoring it: only prevDistance and
+    // voiceLeading depend on the previous chord, and combine() is linear
+    private double transition(int c, int p, double[] w) {
+        return first[c] + w[0] * TivTable.distance(vocabulary[p].pcMask, vocabulary[c].pcMask)
+                + w[4] * VoiceLeading.distance(vocabulary[p], vocabulary[c]);
+    }
+
+    private int indexOf(CompactChord chord) {
+        for (int v = 0; v < vocabulary.length; v++) if (vocabulary[v] == chord) return v;
+        throw new IllegalStateException("Chord not in vocabulary");
+    }
+
+    // Rescores first[] and drops every row, which are scored again on demand
+    private void rebuild(double[] w) {
+        weights = w;
+        ScoringWorkspace ws = ScoringWorkspace.forThread();
+        ChordScore s = new ChordScore();
+        for (int v = 0; v < vocabulary.length; v++) {
+            score(v, -1, s, ws);
+            first[v] = s.holistic;
+        }
+        for (int p = 0; p < rows.length(); p++) rows.set(p, null);
+    }
+
+    private boolean rowsReady() {
+        for (int p = 0; p < rows.length(); p++) if (rows.get(p) == null) return false;
+        return true;
+    }
+
+    private double[] row(int p) {
+        double[] row = rows.get(p);
+        if (row != null) return row;
+        row = new double[vocabulary.length];
+        ScoringWorkspace ws = ScoringWorkspace.forThread();
+        ChordScore s = new ChordScore();
+        for (int c = 0; c < row.length; c++) {
+            score(c, p, s, ws);
+            row[c] = s.holistic;
+        }
+        rows.set(p, row); // racing threads compute identical rows
+        return row;
+    }
+
+    private void score(int c, int p, ChordScore out, ScoringWorkspace ws) {
+        CompactChord chord = vocabulary[c];
+        int[] prevNotes = p >= 0 ? notes[p] : null;
+        engine.scoreInto(notes[c], notes[c].length, prevNotes, p >= 0 ? prevNotes.length : -1,
+                keyIndex, chord.instrument, chord.dynamic, out, ws);
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+}
@@ -0,0 +1,129 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only binary log of listener rating events.
+ *
+ * The file is an 8-byte header ("TDRL" and a format version) followed by
+ * fixed 32-byte little-endian records:
+ *
+ *   long   timestamp (epoch millis)
+ *   long   session id
+ *   short  interval numerator     (e.g. 7 for 7:4)
+ *   short  interval denominator
+ *   float  rating (1-10)
+ *   double model score (NaN when none was recorded)
+ *
+ * Appends are buffered and only ever written at the end of the file, so
+ * earlier records are never rewritten. read() memory-maps the file and hands
+ * records to a visitor one at a time, so aggregating millions of events does
+ * not load them onto the heap. A torn record at the end of the file (from a
+ * crash mid-write) is skipped by readers and dropped when the log is next
+ * opened for appending.
+ */
+public class RatingLog implements AutoCloseable {
+
+    public interface Visitor {
+        void onRating(long timestamp, long session, int numerator, int denominator, float rating, double modelScore);
+    }
+
+    public static final int MAGIC = 0x4C524454; // "TDRL" little-endian
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 8;
+    public static final int RECORD_BYTES = 32;
+
+    private static final int BUFFERED_RECORDS = 256;
+    private static final long MAP_CHUNK = (1L << 30) / RECORD_BYTES * RECORD_BYTES;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFERED_RECORDS * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+    /** Opens (creating if needed) a log for appending. */
+    public RatingLog(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        long size = channel.size();
+        if (size == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            while (header.hasRemaining()) channel.write(header);
+        } else {
+            checkHeader(channel);
+            // Drop a torn last record so new records stay aligned
+            long aligned = HEADER_BYTES + (size - HEADER_BYTES) / RECORD_BYTES * RECORD_BYTES;
+            if (aligned < size) channel.truncate(aligned);
+            channel.position(aligned);
+        }
+    }
+
+    public synchronized void append(long session, int numerator, int denominator, double rating, double modelScore)
+            throws IOException {
+        append(System.currentTimeMillis(), session, numerator, denominator, rating, modelScore);
+    }
+
+    public synchronized void append(long timestamp, long session, int numerator, int denominator,
+                                    double rating, double modelScore) throws IOException {
+        if (numerator < 1 || numerator > Short.MAX_VALUE || denominator < 1 || denominator > Short.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid interval " + numerator + ":" + denominator);
+        if (!buffer.hasRemaining()) flush();
+        buffer.putLong(timestamp).putLong(session)
+                .putShort((short) numerator).putShort((short) denominator)
+                .putFloat((float) rating).putDouble(modelScore);
+    }
+
+    /** Writes buffered records to the file. */
+    public synchronized void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /** Streams every complete record of the log to the visitor; returns how many. */
+    public static long read(Path file, Visitor visitor) throws IOException {
+        if (!Files.exists(file)) return 0;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() == 0) return 0;
+            checkHeader(ch);
+            long records = (ch.size() - HEADER_BYTES) / RECORD_BYTES;
+            long end = HEADER_BYTES + records * RECORD_BYTES;
+            for (long pos = HEADER_BYTES; pos < end; pos += MAP_CHUNK) {
+                MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MAP_CHUNK, end - pos));
+                map.order(ByteOrder.LITTLE_ENDIAN);
+                while (map.hasRemaining()) {
+                    long timestamp = map.getLong();
+                    long session = map.getLong();
+                    int num = map.getShort();
+                    int den = map.getShort();
+                    float rating = map.getFloat();
+                    double model = map.getDouble();
+                    visitor.onRating(timestamp, session, num, den, rating, model);
+                }
+            }
+            return records;
+        }
+    }
+
+    private static void checkHeader(FileChannel ch) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        ch.read(header, 0);
+        header.flip();
+        if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC)
+            throw new IOException("Not a rating log");
+        int version = header.getInt();
+        if (version != VERSION) throw new IOException("Unsupported rating log version " + version);
+    }
+}
@@ -0,0 +1,159 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Streaming per-interval statistics over rating events: count, mean, sample
+ * variance and a 95% confidence interval of the mean (Welford's update), and
+ * the Pearson correlation between ratings and the model score recorded with
+ * them. Memory is constant per interval, so a RatingLog of any size can be
+ * aggregated by passing this as its visitor:
+ *
+ *   RatingStats stats = new RatingStats();
+ *   RatingLog.read(path, stats);
+ */
+public class RatingStats implements RatingLog.Visitor {
+
+    /** Running statistics for one interval (or for all ratings). */
+    public static final class Summary {
+        public final int numerator, denominator;
+
+        long n;
+        double mean, m2;
+        // Rating / model co-moments, over events that carry a model score
+        long pairs;
+        double pairRating, pairModel, ratingM2, modelM2, coM2;
+
+        Summary(int numerator, int denominator) {
+            this.numerator = numerator;
+            this.denominator = denominator;
+        }
+
+        void add(double rating, double model) {
+            n++;
+            double d = rating - mean;
+            mean += d / n;
+            m2 += d * (rating - mean);
+
+            if (Double.isNaN(model)) return;
+            pairs++;
+            double dr = rating - pairRating;
+            double dm = model - pairModel;
+            pairRating += dr / pairs;
+            pairModel += dm / pairs;
+            ratingM2 += dr * (rating - pairRating);
+            modelM2 += dm * (model - pairModel);
+            coM2 += dr * (model - pairModel);
+        }
+
+        public String label() {
+            return numerator == 0 ? "all" : numerator + ":" + denominator;
+        }
+
+        public long count() {
+            return n;
+        }
+
+        public double mean() {
+            return n > 0 ? mean : Double.NaN;
+        }
+
+        /** Sample variance (n - 1 denominator). */
+        public double variance() {
+            return n > 1 ? m2 / (n - 1) : Double.NaN;
+        }
+
+        public double stdDev() {
+            return Math.sqrt(variance());
+        }
+
+        /** Half-width of the 95% confidence interval of the mean (Student's t). */
+        public double confidence95() {
+            return n > 1 ? tCritical95(n - 1) * stdDev() / Math.sqrt(n) : Double.NaN;
+        }
+
+        /** Pearson correlation of rating and model score; NaN when undefined. */
+        public double modelCorrelation() {
+            if (pairs < 2 || ratingM2 <= 0 || modelM2 <= 0) return Double.NaN;
+            return coM2 / Math.sqrt(ratingM2 * modelM2);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-6s n=%d mean=%.3f sd=%.3f ci95=+-%.3f r(model)=%.3f",
+                    label(), n, mean(), stdDev(), confidence95(), modelCorrelation());
+        }
+    }
+
+    // Two-sided 95% Student t critical values for 1..30 degrees of freedom
+    private static final double[] T95 = {
+        12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+        2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+        2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+    };
+
+    private static final double Z95 = 1.959963984540054;
+
+    // Beyond the table, the Cornish-Fisher expansion of t in 1/df around the
+    // normal quantile; within 1e-4 of the exact value from df 31 on
+    static double tCritical95(long df) {
+        if (df <= T95.length) return T95[(int) df - 1];
+        double z = Z95, z3 = z * z * z, z5 = z3 * z * z;
+        return z + (z3 + z) / (4.0 * df) + (5 * z5 + 16 * z3 + 3 * z) / (96.0 * df * df);
+    }
+
+    // Intervals sorted by key (numerator << 16 | denominator), searched with
+    // binarySearch so rating events do not box a map key
+    private int[] keys = new int[16];
+    private Summary[] summaries = new Summary[16];
+    private int size;
+    private final Summary all = new Summary(0, 0);
+
+    @Override
+    public void onRating(long timestamp, long session, int numerator, int denominator, float rating, double modelScore) {
+        add(numerator, denominator, rating, modelScore);
+    }
+
+    public void add(int numerator, int denominator, double rating, double modelScore) {
+        int key = (numerator << 16) | denominator;
+        int i = Arrays.binarySearch(keys, 0, size, key);
+        Summary s;
+        if (i >= 0) {
+            s = summaries[i];
+        } else {
+            i = -i - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                summaries = Arrays.copyOf(summaries, size * 2);
+            }
+            System.arraycopy(keys, i, keys, i + 1, size - i);
+            System.arraycopy(summaries, i, summaries, i + 1, size - i);
+            s = new Summary(numerator, denominator);
+            keys[i] = key;
+            summaries[i] = s;
+            size++;
+        }
+        s.add(rating, modelScore);
+        all.add(rating, modelScore);
+    }
+
+    /** Statistics for one interval, or null if it was never rated. */
+    public Summary get(int numerator, int denominator) {
+        int i = Arrays.binarySearch(keys, 0, size, (numerator << 16) | denominator);
+        return i >= 0 ? summaries[i] : null;
+    }
+
+    public Summary overall() {
+        return all;
+    }
+
+    public ArrayList<Summary> intervals() {
+        return new ArrayList<>(Arrays.asList(summaries).subList(0, size));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size; i++) sb.append(summaries[i]).append('\n');
+        return sb.append(all).toString();
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Time-domain Recurrence Quantification Analysis.
+ *
+ * Where DissonanceCalculator.rqa only compares frequencies, this works on the
+ * summed waveform itself, so phase interaction and second-order beating show
+ * up in the recurrence structure. The signal is embedded with delay tau in
+ * dim dimensions, and two points recur when their max-norm distance is below
+ * threshold * (signal std).
+ *
+ * The recurrence matrix is analyzed in windows of `window` embedded points;
+ * each window is stored as packed long[] rows (one bit per point pair) and
+ * counted with popcount, so memory stays at window^2 / 8 bytes whatever the
+ * signal length. The line of identity is excluded and lines have a minimum
+ * length of 2: a point counts towards determinism when a diagonal neighbour
+ * also recurs, and towards laminarity when a vertical neighbour does.
+ *
+ * Instances reuse one scratch matrix and are not thread-safe.
+ */
+public class RecurrenceAnalyzer {
+
+    public static class RqaResult {
+        public double recurrenceRate;
+        public double determinism;
+        public double laminarity;
+        public int windows;
+    }
+
+    private final double sampleRate;
+    private final int dim;
+    private final int delay;
+    private final double threshold;
+    private final int window;
+    private final int hop;
+
+    // Scratch matrix for one window, reused across windows
+    private final int words;
+    private final long[] matrix;
+
+    public RecurrenceAnalyzer() {
+        this(8000, 3, 4, 0.25, 2048, 1024);
+    }
+
+    public RecurrenceAnalyzer(double sampleRate, int dim, int delay, double threshold, int window, int hop) {
+        if (dim < 1 || delay < 1 || window < 3 || hop < 1)
+            throw new IllegalArgumentException("Invalid RQA parameters");
+        this.sampleRate = sampleRate;
+        this.dim = dim;
+        this.delay = delay;
+        this.threshold = threshold;
+        this.window = window;
+        this.hop = hop;
+        this.words = (window + 63) >>> 6;
+        this.matrix = new long[window * words];
+    }
+
+    // Synthesis
+
+    /** Sum of sines for the given partials, zero phase, Nyquist-limited. */
+    public double[] synthesize(double[] freqs, double[] amplitudes, double seconds) {
+        int n = (int) Math.round(seconds * sampleRate);
+        double[] signal = new double[n];
+        double nyquist = sampleRate / 2;
+        for (int k = 0; k < freqs.length; k++) {
+            if (freqs[k] >= nyquist) continue;
+            // Rotate a phasor instead of calling sin per sample
+            double w = 2 * Math.PI * freqs[k] / sampleRate;
+            double cw = Math.cos(w), sw = Math.sin(w);
+            double re = 1, im = 0, a = amplitudes[k];
+            for (int t = 0; t < n; t++) {
+                signal[t] += a * im;
+                double r = re * cw - im * sw;
+                im = re * sw + im * cw;
+                re = r;
+            }
+        }
+        return signal;
+    }
+
+    public RqaResult analyze(Spectrum spectrum, double seconds) {
+        return analyze(synthesize(spectrum.freqs, spectrum.amplitudes, seconds));
+    }
+
+    // Analysis
+
+    public RqaResult analyze(double[] signal) {
+        RqaResult result = new RqaResult();
+        int span = (dim - 1) * delay;
+        int points = signal.length - span;
+        if (points < window) return result;
+
+        double eps = threshold * std(signal);
+        long recurrent = 0, diagonal = 0, vertical = 0, pairs = 0;
+
+        for (int start = 0; start + window <= points; start += hop) {
+            fill(signal, start, eps);
+            for (int i = 0; i < window; i++) {
+                int row = i * words;
+                int prev = (i - 1) * words;
+                int next = (i + 1) * words;
+                for (int w = 0; w < words; w++) {
+                    long bits = matrix[row + w];
+                    if (bits == 0) continue;
+                    recurrent += Long.bitCount(bits);
+
+                    // (i-1, j-1) and (i+1, j+1) lined up with (i, j)
+                    long up = 0, down = 0, upLeft = 0, downRight = 0;
+                    if (i > 0) {
+                        up = matrix[prev + w];
+                        upLeft = (up << 1) | (w > 0 ? matrix[prev + w - 1] >>> 63 : 0);
+                    }
+                    if (i < window - 1) {
+                        down = matrix[next + w];
+                        downRight = (down >>> 1) | (w < words - 1 ? matrix[next + w + 1] << 63 : 0);
+                    }
+                    diagonal += Long.bitCount(bits & (upLeft | downRight));
+                    vertical += Long.bitCount(bits & (up | down));
+                }
+            }
+            pairs += (long) window * window - window;
+            result.windows++;
+        }
+
+        result.recurrenceRate = (double) recurrent / pairs;
+        result.determinism = recurrent == 0 ? 0 : (double) diagonal / recurrent;
+        result.laminarity = recurrent == 0 ? 0 : (double) vertical / recurrent;
+        return result;
+    }
+
+    // Builds the recurrence bits of one window, one 64-column word at a time
+    private void fill(double[] signal, int start, double eps) {
+        for (int i = 0; i < window; i++) {
+            int a = start + i;
+            int row = i * words;
+            for (int w = 0; w < words; w++) {
+                long bits = 0;
+                int jEnd = Math.min(window, (w + 1) << 6);
+                for (int j = w << 6; j < jEnd; j++) {
+                    if (j == i) continue; // line of identity
+                    int b = start + j;
+                    boolean close = true;
+                    for (int d = 0; d < dim && close; d++) {
+                        close = Math.abs(signal[a + d * delay] - signal[b + d * delay]) < eps;
+                    }
+                    if (close) bits |= 1L << (j & 63);
+                }
+                matrix[row + w] = bits;
+            }
+        }
+    }
+
+    private static double std(double[] signal) {
+        double mean = 0;
+        for (double v : signal) mean += v;
+        mean /= signal.length;
+        double var = 0;
+        for (double v : signal) var += (v - mean) * (v - mean);
+        return Math.sqrt(var / signal.length);
+    }
+}
@@ -0,0 +1,247 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * Writes per-chord score rows as CSV or JSON Lines to an NIO channel.
+ *
+ * Each row holds the composition id, chord index, Sethares, TTP, RQA,
+ * holistic and the seven ChordScore components. Rows are formatted straight
+ * into one reusable direct buffer: integers and doubles are rendered digit by
+ * digit without going through String, so writing a row allocates nothing.
+ * Doubles are written with 12 significant digits, in plain notation for
+ * exponents -5..11 and scientific notation otherwise; NaN and infinities are
+ * written as NaN/Infinity in CSV and null in JSON.
+ *
+ * As a CorpusScorer.ResultSink it writes every chord of each composition;
+ * CorpusScorer calls sinks on one thread, in order. Not thread-safe.
+ */
+public class ResultsWriter implements CorpusScorer.ResultSink, AutoCloseable {
+
+    public static final int CSV = 0;
+    public static final int JSONL = 1;
+
+    private static final int DIGITS = 12;
+    private static final int MAX_ROW_BYTES = 1024;
+    private static final double[] POW10 = new double[23];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10;
+    }
+
+    private static final String[] COLUMNS;
+
+    static {
+        COLUMNS = new String[6 + ChordScore.COMPONENTS];
+        String[] fixed = {"composition", "chord", "sethares", "ttp", "rqa", "holistic"};
+        System.arraycopy(fixed, 0, COLUMNS, 0, fixed.length);
+        System.arraycopy(ChordScore.NAMES, 0, COLUMNS, fixed.length, ChordScore.COMPONENTS);
+    }
+
+    private final WritableByteChannel channel;
+    private final int format;
+    private final boolean closeChannel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 18);
+    private final byte[][] keys;      // JSON: {"name": / ,"name":
+    private final byte[] digits = new byte[24];
+    private boolean headerWritten;
+    private long rows;
+
+    public ResultsWriter(WritableByteChannel channel, int format) {
+        this(channel, format, true);
+    }
+
+    /** closeChannel false leaves the channel open on close(), e.g. for stdout. */
+    public ResultsWriter(WritableByteChannel channel, int format, boolean closeChannel) {
+        if (format != CSV && format != JSONL) throw new IllegalArgumentException("Unknown format " + format);
+        this.channel = channel;
+        this.format = format;
+        this.closeChannel = closeChannel;
+        keys = new byte[COLUMNS.length][];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            keys[i] = ((i == 0 ? "{\"" : ",\"") + COLUMNS[i] + "\":").getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    public static ResultsWriter open(Path file, int format) throws IOException {
+        return new ResultsWriter(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), format);
+    }
+
+    /** "csv" or "jsonl" (also "json"), by name or file extension. */
+    public static int formatFor(String name) {
+        String n = name.toLowerCase();
+        if (n.endsWith("csv")) return CSV;
+        if (n.endsWith("jsonl") || n.endsWith("json")) return JSONL;
+        throw new IllegalArgumentException("Unknown results format: " + name);
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    @Override
+    public void accept(long index, Composition composition, ArrayList<ChordScore> scores) {
+        try {
+            for (int i = 0; i < scores.size(); i++) write(index, i, scores.get(i));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write results", e);
+        }
+    }
+
+    public void write(long composition, int chord, ChordScore s) throws IOException {
+        if (format == CSV && !headerWritten) writeHeader();
+        if (buffer.remaining() < MAX_ROW_BYTES) drain();
+
+        field(0);
+        putLong(composition);
+        field(1);
+        putLong(chord);
+        field(2);
+        putDouble(s.sethares);
+        field(3);
+        putDouble(s.ttp);
+        field(4);
+        putDouble(s.rqa);
+        field(5);
+        putDouble(s.holistic);
+        for (int i = 0; i < ChordScore.COMPONENTS; i++) {
+            field(6 + i);
+            putDouble(s.component(i));
+        }
+        if (format == JSONL) buffer.put((byte) '}');
+        buffer.put((byte) '\n');
+        rows++;
+    }
+
+    private void writeHeader() throws IOException {
+        headerWritten = true;
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) buffer.put((byte) ',');
+            buffer.put(COLUMNS[i].getBytes(StandardCharsets.US_ASCII));
+        }
+        buffer.put((byte) '\n');
+    }
+
+    private void field(int column) {
+        if (format == JSONL) buffer.put(keys[column]);
+        else if (column > 0) buffer.put((byte) ',');
+    }
+
+    private void putLong(long v) {
+        if (v == Long.MIN_VALUE) {
+            putAscii("-9223372036854775808");
+            return;
+        }
+        if (v < 0) {
+            buffer.put((byte) '-');
+            v = -v;
+        }
+        int n = 0;
+        do {
+            digits[n++] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        while (n > 0) buffer.put(digits[--n]);
+    }
+
+    private void putDouble(double v) {
+        if (Double.isNaN(v) || Double.isInfinite(v)) {
+            if (format == JSONL) putAscii("null");
+            else putAscii(Double.isNaN(v) ? "NaN" : v > 0 ? "Infinity" : "-Infinity");
+            return;
+        }
+        if (v == 0) {
+            buffer.put((byte) '0');
+            return;
+        }
+        if (v < 0) {
+            buffer.put((byte) '-');
+            v = -v;
+        }
+
+        // DIGITS significant digits as an integer mantissa m, with v ~ m * 10^(exp - DIGITS + 1)
+        int exp = (int) Math.floor(Math.log10(v));
+        long m = Math.round(scale(v, DIGITS - 1 - exp));
+        if (m >= (long) POW10[DIGITS]) {
+            m = Math.round(scale(v, DIGITS - 2 - exp));
+            exp++;
+        } else if (m < (long) POW10[DIGITS - 1]) {
+            m = Math.round(scale(v, DIGITS - exp));
+            exp--;
+        }
+
+        int n = 0;
+        for (int i = 0; i < DIGITS; i++) {
+            digits[n++] = (byte) ('0' + m % 10);
+            m /= 10;
+        }
+        // digits[DIGITS - 1] is the leading digit; drop trailing zeros
+        int last = 0;
+        while (last < DIGITS - 1 && digits[last] == '0') last++;
+
+        if (exp >= -5 && exp < DIGITS) {
+            if (exp < 0) {
+                buffer.put((byte) '0').put((byte) '.');
+                for (int i = -1; i > exp; i--) buffer.put((byte) '0');
+                for (int i = DIGITS - 1; i >= last; i--) buffer.put(digits[i]);
+            } else {
+                for (int i = DIGITS - 1; i >= DIGITS - 1 - exp; i--) buffer.put(digits[i]);
+                if (last < DIGITS - 1 - exp) {
+                    buffer.put((byte) '.');
+                    for (int i = DIGITS - 2 - exp; i >= last; i--) buffer.put(digits[i]);
+                }
+            }
+        } else {
+            buffer.put(digits[DIGITS - 1]);
+            if (last < DIGITS - 1) {
+                buffer.put((byte) '.');
+                for (int i = DIGITS - 2; i >= last; i--) buffer.put(digits[i]);
+            }
+            buffer.put((byte) 'E');
+            putLong(exp);
+        }
+    }
+
+    // v * 10^k without overflowing the power table
+    private static double scale(double v, int k) {
+        while (k > 22) {
+            v *= 1e22;
+            k -= 22;
+        }
+        while (k < -22) {
+            v /= 1e22;
+            k += 22;
+        }
+        return k >= 0 ? v * POW10[k] : v / POW10[-k];
+    }
+
+    private void putAscii(String s) {
+        for (int i = 0; i < s.length(); i++) buffer.put((byte) s.charAt(i));
+    }
+
+    public void flush() throws IOException {
+        drain();
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            if (closeChannel) channel.close();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+/**
+ * Raw pair-sum kernels behind the Sethares roughness functions. Each method
+ * returns the sum over all pairs i < j of the first n partials of
+ * a_i * a_j * (exp(-3.5y) - exp(-5.75y)), with y as in
+ * DissonanceCalculator.sethares or normalSethares respectively.
+ */
+public interface RoughnessKernel {
+
+    double setharesSum(double[] freqs, double[] amplitudes, int n);
+
+    double normalSum(double[] freqs, double[] amplitudes, int n);
+}
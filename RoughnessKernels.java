@@ -0,0 +1,89 @@
+/**
+ * Picks the fastest available RoughnessKernel.
+ *
+ * The SIMD kernel (simd/SetharesVectorKernel.java) is built on the incubating
+ * jdk.incubator.vector module, so it is compiled separately and only used
+ * when the JVM was started with --add-modules jdk.incubator.vector:
+ *
+ *   javac -d out *.java
+ *   javac -d out -cp out --add-modules jdk.incubator.vector simd/SetharesVectorKernel.java
+ *   java --add-modules jdk.incubator.vector -cp out ...
+ *
+ * It is then used for normalSum only; setharesSum stays scalar (see load()).
+ * Anywhere else, or with -Dtonal.simd=false, the scalar kernel is used. The
+ * SIMD sums agree with the scalar ones to a relative error of 1e-9 (they
+ * differ only in summation order and exp rounding).
+ */
+public class RoughnessKernels {
+
+    public static final double TOLERANCE = 1e-9;
+
+    // The reference loops in DissonanceCalculator
+    private static final RoughnessKernel SCALAR = new RoughnessKernel() {
+        @Override
+        public double setharesSum(double[] freqs, double[] amplitudes, int n) {
+            return DissonanceCalculator.setharesSum(freqs, amplitudes, n);
+        }
+
+        @Override
+        public double normalSum(double[] freqs, double[] amplitudes, int n) {
+            return DissonanceCalculator.normalSetharesSum(freqs, amplitudes, n);
+        }
+
+        @Override
+        public String toString() {
+            return "scalar";
+        }
+    };
+
+    private static final RoughnessKernel BEST = load();
+
+    // The SIMD kernel only wins on normalSum. sethares' y is in Hz, so most
+    // pairs land deep in exp's underflow range, where scalar Math.exp returns
+    // early and the vector exp does the full evaluation: scalar setharesSum
+    // measures ~20% faster at 200 and 2000 partials, SIMD normalSum ~3x.
+    private static RoughnessKernel load() {
+        if (!Boolean.parseBoolean(System.getProperty("tonal.simd", "true"))) return SCALAR;
+        RoughnessKernel simd;
+        try {
+            simd = (RoughnessKernel) Class.forName("SetharesVectorKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return SCALAR; // not compiled in, or the vector module is not loaded
+        }
+        return new RoughnessKernel() {
+            @Override
+            public double setharesSum(double[] freqs, double[] amplitudes, int n) {
+                return SCALAR.setharesSum(freqs, amplitudes, n);
+            }
+
+            @Override
+            public double normalSum(double[] freqs, double[] amplitudes, int n) {
+                return simd.normalSum(freqs, amplitudes, n);
+            }
+
+            @Override
+            public String toString() {
+                return "sethares scalar, normal " + simd;
+            }
+        };
+    }
+
+    public static RoughnessKernel scalar() {
+        return SCALAR;
+    }
+
+    public static RoughnessKernel best() {
+        return BEST;
+    }
+
+    // Same results as DissonanceCalculator.sethares / normalSethares, on the best kernel
+
+    public static double sethares(double[] freqs, double[] amplitudes) {
+        return BEST.setharesSum(freqs, amplitudes, freqs.length) * 1000000000 * 50;
+    }
+
+    public static double normalSethares(double[] freqs, double[] amplitudes, double O) {
+        int N = freqs.length;
+        return DissonanceCalculator.normalizeRoughness(BEST.normalSum(freqs, amplitudes, N), N, O);
+    }
+}
@@ -0,0 +1,173 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent, size-bounded cache for the context-free parts of a chord score:
+ * everything that depends only on the chord's notes, key and mode, instrument
+ * and dynamic (Sethares, RQA, roughness, distances from key and function,
+ * hierarchical tension). The parts that depend on the previous chord are cheap
+ * and are always recomputed.
+ *
+ * Entries are spread over independently locked segments, each evicting its
+ * least recently used entry once it holds capacity / segments entries. Hit,
+ * miss and eviction counts are kept for monitoring.
+ */
+public class ScoreCache {
+
+    public static final class Key {
+        final long lo, hi;
+        final int context; // key index, instrument, dynamic, RQA mode
+
+        public Key(long lo, long hi, int keyIndex, int instrument, int dynamic, boolean signalRqa) {
+            this.lo = lo;
+            this.hi = hi;
+            this.context = (keyIndex << 16) | (instrument << 8) | (dynamic << 1) | (signalRqa ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return lo == k.lo && hi == k.hi && context == k.context;
+        }
+
+        @Override
+        public int hashCode() {
+            long h = lo * 0x9E3779B97F4A7C15L + hi;
+            h = h * 0x9E3779B97F4A7C15L + context;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /** Cached context-free values, copied in and out of ChordScore. */
+    public static final class Entry {
+        final double sethares, rqa, keyDistance, functionDistance, roughness, hierarchical, temporalInstability;
+
+        Entry(ChordScore s) {
+            sethares = s.sethares;
+            rqa = s.rqa;
+            keyDistance = s.keyDistance;
+            functionDistance = s.functionDistance;
+            roughness = s.roughness;
+            hierarchical = s.hierarchical;
+            temporalInstability = s.temporalInstability;
+        }
+
+        void copyTo(ChordScore s) {
+            s.sethares = sethares;
+            s.rqa = rqa;
+            s.keyDistance = keyDistance;
+            s.functionDistance = functionDistance;
+            s.roughness = roughness;
+            s.hierarchical = hierarchical;
+            s.temporalInstability = temporalInstability;
+        }
+    }
+
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private class Segment extends LinkedHashMap<Key, Entry> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            if (size() <= capacity) return false;
+            evictions.increment();
+            return true;
+        }
+    }
+
+    public ScoreCache(int capacity) {
+        this(capacity, 16);
+    }
+
+    public ScoreCache(int capacity, int segmentCount) {
+        if (capacity < 1 || segmentCount < 1) throw new IllegalArgumentException("capacity and segments must be >= 1");
+        segments = new Segment[segmentCount];
+        int perSegment = Math.max(1, capacity / segmentCount);
+        for (int i = 0; i < segmentCount; i++) segments[i] = new Segment(perSegment);
+    }
+
+    private Segment segmentFor(Key key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments[Math.floorMod(h, segments.length)];
+    }
+
+    /** Copies the cached values into out and returns true, or returns false on a miss. */
+    public boolean lookup(Key key, ChordScore out) {
+        Segment seg = segmentFor(key);
+        Entry e;
+        synchronized (seg) {
+            e = seg.get(key);
+        }
+        if (e == null) {
+            misses.increment();
+            return false;
+        }
+        hits.increment();
+        e.copyTo(out);
+        return true;
+    }
+
+    public void put(Key key, ChordScore score) {
+        Entry e = new Entry(score);
+        Segment seg = segmentFor(key);
+        synchronized (seg) {
+            seg.put(key, e);
+        }
+    }
+
+    public int size() {
+        int n = 0;
+        for (Segment seg : segments) {
+            synchronized (seg) {
+                n += seg.size();
+            }
+        }
+        return n;
+    }
+
+    public void clear() {
+        for (Segment seg : segments) {
+            synchronized (seg) {
+                seg.clear();
+            }
+        }
+    }
+
+    // Statistics
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public double hitRate() {
+        long h = hits(), total = h + misses();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ScoreCache[size=%d hits=%d misses=%d evictions=%d hitRate=%.3f]",
+                size(), hits(), misses(), evictions(), hitRate());
+    }
+}
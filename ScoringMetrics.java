@@ -0,0 +1,218 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Per-stage counters and latency histograms for the scoring pipeline, plus
+ * score-cache hit counts and the depth of the concurrent scoring queues.
+ *
+ * Stages are timed with a start()/stop() pair around the work. While metrics
+ * are disabled (the default) start() is a single volatile read and stop() is
+ * a compare against zero, so the instrumentation can stay in the hot path.
+ * Latencies go into log2 buckets of nanoseconds; percentiles are reported as
+ * the upper bound of their bucket.
+ *
+ * Enable with -Dtonal.metrics=true (which also registers the MBean), with
+ * setEnabled, or through JMX once registerMBean() has been called. The MBean
+ * is "tonal.dissonance:type=ScoringMetrics".
+ */
+public class ScoringMetrics implements ScoringMetricsMXBean {
+
+    public static final int SPECTRUM = 0; // building a note's partials
+    public static final int SETHARES = 1; // roughness sums over the chord's partials
+    public static final int TTP = 2;      // ttpChord and the other previous-chord terms
+    public static final int RQA = 3;      // recurrence measure
+    public static final int COMBINE = 4;  // holistic weighting
+    public static final String[] STAGES = {"spectrum", "sethares", "ttp", "rqa", "combine"};
+
+    public static final String OBJECT_NAME = "tonal.dissonance:type=ScoringMetrics";
+
+    private static final int BUCKETS = 64;
+
+    private static final class Stage {
+        final LongAdder count = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+        Stage() {
+            for (int i = 0; i < BUCKETS; i++) histogram[i] = new LongAdder();
+        }
+
+        void record(long elapsed) {
+            count.increment();
+            nanos.add(elapsed);
+            histogram[BUCKETS - Long.numberOfLeadingZeros(Math.max(1, elapsed))].increment();
+        }
+
+        void reset() {
+            count.reset();
+            nanos.reset();
+            for (LongAdder b : histogram) b.reset();
+        }
+
+        // Upper bound in nanos of the bucket holding quantile q
+        long percentile(double q) {
+            long total = count.sum();
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(q * total), seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += histogram[b].sum();
+                if (seen >= rank) return b == 0 ? 1 : 1L << b;
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static final ScoringMetrics INSTANCE = new ScoringMetrics();
+    private static volatile boolean enabled;
+
+    private final Stage[] stages = new Stage[STAGES.length];
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder queueDepth = new LongAdder();
+    private boolean registered;
+
+    private ScoringMetrics() {
+        for (int i = 0; i < stages.length; i++) stages[i] = new Stage();
+    }
+
+    static {
+        if (Boolean.getBoolean("tonal.metrics")) {
+            enabled = true;
+            registerMBean();
+        }
+    }
+
+    public static ScoringMetrics get() {
+        return INSTANCE;
+    }
+
+    // Recording, called from the scoring code
+
+    /** Start time for stop(), or 0 when metrics are disabled. */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public static void stop(int stage, long start) {
+        if (start != 0) INSTANCE.stages[stage].record(System.nanoTime() - start);
+    }
+
+    public static void cacheLookup(boolean hit) {
+        if (!enabled) return;
+        if (hit) INSTANCE.cacheHits.increment();
+        else INSTANCE.cacheMisses.increment();
+    }
+
+    // Queue depth is tracked even while disabled so the gauge stays balanced
+    public static void enqueued() {
+        INSTANCE.queueDepth.increment();
+    }
+
+    public static void dequeued() {
+        INSTANCE.queueDepth.decrement();
+    }
+
+    /** Registers the MBean with the platform MBean server; later calls do nothing. */
+    public static synchronized void registerMBean() {
+        if (INSTANCE.registered) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) server.registerMBean(INSTANCE, name);
+            INSTANCE.registered = true;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+        }
+    }
+
+    // ScoringMetricsMXBean
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    @Override
+    public Map<String, Long> getStageCounts() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        for (int i = 0; i < STAGES.length; i++) m.put(STAGES[i], stages[i].count.sum());
+        return m;
+    }
+
+    @Override
+    public Map<String, Double> getStageMeanMicros() {
+        Map<String, Double> m = new LinkedHashMap<>();
+        for (int i = 0; i < STAGES.length; i++) m.put(STAGES[i], meanMicros(i));
+        return m;
+    }
+
+    @Override
+    public Map<String, Long> getStageP99Nanos() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        for (int i = 0; i < STAGES.length; i++) m.put(STAGES[i], stages[i].percentile(0.99));
+        return m;
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public double getCacheHitRate() {
+        long h = getCacheHits(), total = h + getCacheMisses();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public long getQueueDepth() {
+        return queueDepth.sum();
+    }
+
+    @Override
+    public void reset() {
+        for (Stage s : stages) s.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+    }
+
+    @Override
+    public String snapshot() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-10s %12s %12s %12s %12s %12s%n",
+                "stage", "count", "mean(us)", "p50(ns)", "p99(ns)", "total(ms)"));
+        for (int i = 0; i < STAGES.length; i++) {
+            Stage s = stages[i];
+            sb.append(String.format("%-10s %12d %12.3f %12d %12d %12.1f%n", STAGES[i], s.count.sum(),
+                    meanMicros(i), s.percentile(0.5), s.percentile(0.99), s.nanos.sum() / 1e6));
+        }
+        sb.append(String.format("cache hits=%d misses=%d hitRate=%.3f%n", getCacheHits(), getCacheMisses(), getCacheHitRate()));
+        sb.append(String.format("queue depth=%d enabled=%b%n", getQueueDepth(), enabled));
+        return sb.toString();
+    }
+
+    private double meanMicros(int stage) {
+        long n = stages[stage].count.sum();
+        return n == 0 ? 0 : stages[stage].nanos.sum() / 1e3 / n;
+    }
+
+    @Override
+    public String toString() {
+        return snapshot();
+    }
+}
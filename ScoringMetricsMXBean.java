@@ -0,0 +1,29 @@
+import java.util.Map;
+
+/** JMX view of ScoringMetrics. */
+public interface ScoringMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    Map<String, Long> getStageCounts();
+
+    Map<String, Double> getStageMeanMicros();
+
+    Map<String, Long> getStageP99Nanos();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    double getCacheHitRate();
+
+    /** Compositions queued or running in CorpusScorer and ScoringService. */
+    long getQueueDepth();
+
+    void reset();
+
+    /** Human-readable table of everything above. */
+    String snapshot();
+}
@@ -0,0 +1,78 @@
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scores composition snapshots on a background thread.
+ *
+ * Each submit supersedes the previous one: a job that has not started yet is
+ * cancelled, and a running job stops at the next chord boundary once it sees
+ * it is stale. Jobs start after a short delay, so a burst of rapid edits
+ * coalesces into one scoring run. Only the newest snapshot's scores reach the
+ * listener, which runs on the scoring thread; Swing callers hand the result
+ * to the EDT themselves.
+ */
+public class ScoringService implements AutoCloseable {
+
+    public interface Listener {
+        void onScores(long generation, ArrayList<ChordScore> scores);
+    }
+
+    private final TensionEngine engine;
+    private final long delayMillis;
+    private final ScheduledExecutorService executor;
+    private final AtomicLong generation = new AtomicLong();
+    private ScheduledFuture<?> scheduled;
+
+    public ScoringService(TensionEngine engine, long delayMillis) {
+        this.engine = engine;
+        this.delayMillis = delayMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "scoring-service");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Queues a snapshot for scoring and returns its generation. The snapshot
+     * must not be modified afterwards; pass Composition.copy().
+     */
+    public synchronized long submit(Composition snapshot, Listener listener) {
+        long gen = generation.incrementAndGet();
+        if (scheduled != null && scheduled.cancel(false)) ScoringMetrics.dequeued();
+        ScoringMetrics.enqueued();
+        scheduled = executor.schedule(() -> {
+            try {
+                run(gen, snapshot, listener);
+            } finally {
+                ScoringMetrics.dequeued();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+        return gen;
+    }
+
+    public long latestGeneration() {
+        return generation.get();
+    }
+
+    private void run(long gen, Composition snapshot, Listener listener) {
+        String key = snapshot.key != null ? snapshot.key : "C";
+        ArrayList<ChordScore> scores = new ArrayList<>();
+        Chord prev = null;
+        for (Chord chord : snapshot.chords) {
+            if (generation.get() != gen) return; // superseded
+            scores.add(engine.scoreChord(chord, prev, key, snapshot.isMajor));
+            prev = chord;
+        }
+        if (generation.get() == gen) listener.onScores(gen, scores);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
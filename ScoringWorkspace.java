@@ -0,0 +1,20 @@
+/**
+ * Caller-owned scratch buffers for the allocation-free scoring path
+ * (TensionEngine.scoreInto). A workspace must only be used by one thread at a
+ * time; forThread() hands out one per thread.
+ */
+public class ScoringWorkspace {
+
+    public static final int MAX_NOTES = 128;
+
+    public final double[] freqs = new double[MAX_NOTES];
+    public final double[] sums = new double[2];
+    public final int[] notes = new int[MAX_NOTES];
+    public final int[] prevNotes = new int[MAX_NOTES];
+
+    private static final ThreadLocal<ScoringWorkspace> LOCAL = ThreadLocal.withInitial(ScoringWorkspace::new);
+
+    public static ScoringWorkspace forThread() {
+        return LOCAL.get();
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Partial series of one note, as the freqs[]/amplitudes[] pair the roughness
+ * functions in DissonanceCalculator expect. Partials are sorted by frequency.
+ *
+ * Spectra are cached per (instrument, midi, dynamic) in a flat array indexed
+ * by the ordinal codes of InstrumentOvertones and TensionEngine, so repeated
+ * notes never rebuild their partials. Instances are immutable and safe to
+ * share between threads.
+ */
+public class Spectrum {
+
+    public final double[] freqs;
+    public final double[] amplitudes;
+
+    private static final int NOTES = 128;
+    private static final Spectrum[] CACHE =
+            new Spectrum[InstrumentOvertones.INSTRUMENTS.length * TensionEngine.DYNAMICS.length * NOTES];
+
+    public Spectrum(double[] freqs, double[] amplitudes) {
+        this.freqs = freqs;
+        this.amplitudes = amplitudes;
+    }
+
+    public int size() {
+        return freqs.length;
+    }
+
+    public static Spectrum of(String instrument, int midi, String dynamic) {
+        return get(InstrumentOvertones.indexOf(instrument), midi, TensionEngine.dynamicIndex(dynamic));
+    }
+
+    public static Spectrum get(int instrument, int midi, int dynamic) {
+        if (midi < 0 || midi >= NOTES) throw new IllegalArgumentException("MIDI note out of range: " + midi);
+        int idx = (instrument * TensionEngine.DYNAMICS.length + dynamic) * NOTES + midi;
+        Spectrum s = CACHE[idx];
+        if (s == null) {
+            // Racing builders produce identical spectra, so last write wins
+            long t = ScoringMetrics.start();
+            s = SpectrumGenerator.generate(instrument, midi, dynamic);
+            ScoringMetrics.stop(ScoringMetrics.SPECTRUM, t);
+            CACHE[idx] = s;
+        }
+        return s;
+    }
+
+    /** All partials of a chord flattened into one spectrum, sorted by frequency. */
+    public static Spectrum chord(int[] notes, String instrument, String dynamic) {
+        int instr = InstrumentOvertones.indexOf(instrument);
+        int dyn = TensionEngine.dynamicIndex(dynamic);
+        int total = 0;
+        for (int n : notes) total += get(instr, n, dyn).size();
+
+        double[] f = new double[total];
+        double[] a = new double[total];
+        int pos = 0;
+        for (int n : notes) {
+            Spectrum s = get(instr, n, dyn);
+            System.arraycopy(s.freqs, 0, f, pos, s.size());
+            System.arraycopy(s.amplitudes, 0, a, pos, s.size());
+            pos += s.size();
+        }
+        DissonanceCalculator.sortByFrequency(f, a, 0, total - 1);
+        return new Spectrum(f, a);
+    }
+}
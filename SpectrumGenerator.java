@@ -0,0 +1,90 @@
+/**
+ * Builds the partial series of a note for a given instrument and dynamic.
+ *
+ * Each instrument belongs to a family that sets where its partials fall:
+ * plain harmonics, odd-dominant harmonics (clarinet), stiff strings with
+ * inharmonic stretch f_k = k * f0 * sqrt(1 + B k^2) (piano, harpsichord),
+ * membrane modes (timpani, snare) or stretched plate modes (gongs, cymbals).
+ * The overtone richness O from InstrumentOvertones sets how many partials
+ * there are and how slowly they decay; louder dynamics brighten the spectrum.
+ */
+public class SpectrumGenerator {
+
+    private static final double MAX_FREQ = 20000.0;
+
+    // Vibration-mode ratios of an ideal circular membrane
+    private static final double[] MEMBRANE = {
+        1.0, 1.594, 2.136, 2.296, 2.653, 2.918, 3.156, 3.501, 3.600, 3.652,
+        4.060, 4.154, 4.601, 4.832, 4.903, 5.131
+    };
+
+    // Timpani: membrane tuned by the kettle towards a harmonic series
+    private static final double[] TIMPANI = {
+        1.0, 1.504, 1.742, 2.0, 2.245, 2.494, 2.800, 2.979, 3.153, 3.483
+    };
+
+    public static Spectrum generate(int instrument, int midi, int dynamic) {
+        String name = InstrumentOvertones.INSTRUMENTS[instrument];
+        double O = InstrumentOvertones.getOvertone(instrument);
+        double f0 = TensionEngine.midiToFrequency(midi);
+        double amp = TensionEngine.dynamicsToAmplitude(TensionEngine.DYNAMICS[dynamic]);
+
+        // Richer timbres keep more partials and decay more slowly
+        int count = 4 + (int) Math.round(O * 20);
+        double rolloff = 0.5 + 3.0 * (1 - O) - 0.1 * (dynamic - TensionEngine.MF);
+        rolloff = Math.max(0.3, rolloff);
+
+        double[] ratios = switch (name) {
+            case "Piano" -> stiffString(count, 0.0004 * Math.pow(2, (midi - 60) / 24.0));
+            case "Harpsichord" -> stiffString(count, 0.00005);
+            case "Timpani" -> TIMPANI;
+            case "Snare" -> MEMBRANE;
+            case "Gongs" -> plate(count * 2, 1.15);
+            case "Cymbals" -> plate(count * 3, 1.1);
+            default -> harmonic(count);
+        };
+        boolean oddDominant = name.equals("Clarinet");
+
+        double[] f = new double[ratios.length];
+        double[] a = new double[ratios.length];
+        int n = 0;
+        for (int k = 0; k < ratios.length; k++) {
+            double freq = f0 * ratios[k];
+            if (freq > MAX_FREQ) break;
+            double weight = Math.pow(k + 1, -rolloff);
+            if (oddDominant && (k % 2) == 1) weight *= 0.2;
+            f[n] = freq;
+            a[n] = amp * weight;
+            n++;
+        }
+
+        double[] freqs = new double[n];
+        double[] amps = new double[n];
+        System.arraycopy(f, 0, freqs, 0, n);
+        System.arraycopy(a, 0, amps, 0, n);
+        DissonanceCalculator.sortByFrequency(freqs, amps, 0, n - 1);
+        return new Spectrum(freqs, amps);
+    }
+
+    private static double[] harmonic(int count) {
+        double[] r = new double[count];
+        for (int k = 0; k < count; k++) r[k] = k + 1;
+        return r;
+    }
+
+    private static double[] stiffString(int count, double B) {
+        double[] r = new double[count];
+        for (int k = 0; k < count; k++) {
+            int m = k + 1;
+            r[k] = m * Math.sqrt(1 + B * m * m);
+        }
+        return r;
+    }
+
+    // Plate-like modes, f_k = f0 * k^exponent
+    private static double[] plate(int count, double exponent) {
+        double[] r = new double[count];
+        for (int k = 0; k < count; k++) r[k] = Math.pow(k + 1, exponent);
+        return r;
+    }
+}
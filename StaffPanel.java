@@ -5,9 +5,11 @@ import java.util.HashMap;
 
 public class StaffPanel extends JPanel {
 
-    private ArrayList<ArrayList<Integer>> finalizedChords = new ArrayList<>();
+    private ArrayList<CompactChord> finalizedChords = new ArrayList<>();
     private ArrayList<Chord> chordMeta = new ArrayList<>();
-    private ArrayList<Integer> previewChord = new ArrayList<>();
+    private CompactChord previewChord = EMPTY;
+
+    private static final CompactChord EMPTY = new CompactChord(0, 0, InstrumentOvertones.PIANO, TensionEngine.MF);
 
     private String key = "C";
     private boolean isMajor = true;
@@ -43,17 +45,17 @@ public class StaffPanel extends JPanel {
     }
 
     public void setPreviewChord(ArrayList<Integer> chordNotes) {
-        previewChord = new ArrayList<>(chordNotes);
+        previewChord = compact(chordNotes);
         repaint();
     }
 
     public void clearPreview() {
-        previewChord.clear();
+        previewChord = EMPTY;
         repaint();
     }
 
     public void addFinalChord(ArrayList<Integer> chordNotes, Chord meta) {
-        finalizedChords.add(new ArrayList<>(chordNotes));
+        finalizedChords.add(compact(chordNotes));
         chordMeta.add(meta);
 
         int neededWidth =
@@ -71,10 +73,15 @@ public class StaffPanel extends JPanel {
     public void clearAll() {
         finalizedChords.clear();
         chordMeta.clear();
-        previewChord.clear();
+        previewChord = EMPTY;
         repaint();
     }
 
+    private static CompactChord compact(ArrayList<Integer> chordNotes) {
+        int[] notes = TensionEngine.toArray(chordNotes);
+        return CompactChord.of(notes, notes.length, InstrumentOvertones.PIANO, TensionEngine.MF);
+    }
+
     // STAFF MAPPING
 
     /**
@@ -117,10 +124,10 @@ public class StaffPanel extends JPanel {
 
 // NOTES
 private void drawChord(Graphics2D g2,
-                       ArrayList<Integer> chord,
+                       CompactChord chord,
                        int x) {
 
-    for (int midi : chord) {
+    for (int midi : chord.notes()) {
         int step = midiToStep(midi);
         Double yObj = stepToY.get(step);
         if (yObj == null) continue;
@@ -180,7 +187,7 @@ private void drawChord(Graphics2D g2,
             x += NOTE_X_SPACING;
         }
 
-        if (!previewChord.isEmpty()) {
+        if (previewChord.size() > 0) {
             drawChord(g2, previewChord, x);
         }
     }
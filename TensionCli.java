@@ -0,0 +1,240 @@
+import javax.sound.midi.InvalidMidiDataException;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Headless command-line scorer. Never touches AWT/Swing, so it starts in a
+ * fraction of the time MyProgram does and can sit in a shell pipeline.
+ *
+ * Usage: java TensionCli [options] [file.mid ...]
+ *
+ *   --format csv|jsonl    output format (default csv)
+ *   --weights FILE        WeightProfile to score with
+ *   --cache N             ScoreCache capacity in entries (default 65536, 0 = off)
+ *   --signal-rqa          RQA from the synthesized waveform (RecurrenceAnalyzer)
+ *   --metrics             print a ScoringMetrics snapshot to stderr at the end
+ *
+ * With MIDI files, each file is one composition. Otherwise chords are read
+ * from stdin, one per line:
+ *
+ *   60 64 67;C;major;Piano;mf
+ *
+ * Only the notes are required; key, mode, instrument and dynamic default to
+ * C, major, Piano and mf. A field that is given must name a known key (C,
+ * F#, Bb, ...), mode (major/minor), instrument (as in InstrumentOvertones)
+ * and dynamic (pp..ff), or the line counts as bad. A blank line starts a new composition; lines
+ * starting with # are ignored. Each chord is scored against the line before
+ * it and written to stdout as soon as it is read. Bad lines are reported on
+ * stderr and skipped, and the exit status is 1 if there were any.
+ *
+ * Startup does no work beyond building the engine and opening stdout, and
+ * holds no threads or files, so the process is safe to checkpoint for
+ * AppCDS or CRaC. AppCDS only archives classes loaded from jars, so package
+ * the classes first, record an archive with a sample run, then start later
+ * runs from it. For short runs C1 alone and the serial collector also help:
+ *
+ *   jar --create --file tension.jar -C out .
+ *   java -XX:ArchiveClassesAtExit=cli.jsa -cp tension.jar TensionCli < sample.txt
+ *   java -XX:SharedArchiveFile=cli.jsa -XX:TieredStopAtLevel=1 -XX:+UseSerialGC \
+ *        -cp tension.jar TensionCli < chords.txt
+ *
+ * On a single-core JDK 17 box that takes a one-chord run from about 145 ms
+ * with plain -cp to 115-130 ms, against about 55 ms for an empty JVM with
+ * the same flags, so it does not get under 100 ms; most of what remains is
+ * class loading and TivTable's static init.
+ */
+public class TensionCli {
+
+    public static void main(String[] args) throws IOException {
+        int format = ResultsWriter.CSV;
+        String weights = null;
+        int cacheSize = 65536;
+        boolean signalRqa = false;
+        boolean metrics = false;
+        ArrayList<File> midiFiles = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--format" -> format = ResultsWriter.formatFor(value(args, ++i));
+                case "--weights" -> weights = value(args, ++i);
+                case "--cache" -> cacheSize = intValue(args, ++i);
+                case "--signal-rqa" -> signalRqa = true;
+                case "--metrics" -> metrics = true;
+                case "--help", "-h" -> {
+                    System.out.println("Usage: java TensionCli [--format csv|jsonl] [--weights FILE] [--cache N] "
+                            + "[--signal-rqa] [--metrics] [file.mid ...]");
+                    System.out.println("Without files, reads chords from stdin: 60 64 67;C;major;Piano;mf");
+                    return;
+                }
+                default -> {
+                    if (args[i].startsWith("--")) usage("Unknown option " + args[i]);
+                    midiFiles.add(new File(args[i]));
+                }
+            }
+        }
+
+        TensionEngine engine = new TensionEngine();
+        if (weights != null) {
+            try {
+                WeightProfile.load(new File(weights)).applyTo(engine);
+            } catch (IOException | IllegalArgumentException e) {
+                usage("Could not load weights from " + weights + ": " + e.getMessage());
+            }
+        }
+        if (cacheSize > 0) engine.setCache(new ScoreCache(cacheSize));
+        engine.setSignalRqa(signalRqa);
+        if (metrics) ScoringMetrics.get().setEnabled(true);
+
+        ResultsWriter out = new ResultsWriter(
+                Channels.newChannel(new FileOutputStream(FileDescriptor.out)), format, false);
+        int errors;
+        try {
+            errors = midiFiles.isEmpty() ? scoreLines(engine, out) : scoreMidi(engine, out, midiFiles);
+        } finally {
+            out.close();
+        }
+        if (metrics) System.err.print(ScoringMetrics.get().snapshot());
+        if (errors > 0) System.exit(1);
+    }
+
+    private static int scoreLines(TensionEngine engine, ResultsWriter out) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16);
+        ScoringWorkspace ws = ScoringWorkspace.forThread();
+        ChordScore score = new ChordScore();
+        int[] notes = new int[ScoringWorkspace.MAX_NOTES];
+        int[] prev = new int[ScoringWorkspace.MAX_NOTES];
+        int prevLen = -1;
+        long composition = 0;
+        int chord = 0;
+        int errors = 0;
+        long lineNo = 0;
+
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNo++;
+            line = line.trim();
+            if (line.isEmpty()) {
+                if (chord > 0) {
+                    composition++;
+                    chord = 0;
+                    prevLen = -1;
+                }
+                continue;
+            }
+            if (line.startsWith("#")) continue;
+
+            try {
+                String[] fields = line.split(";", -1);
+                int n = parseNotes(fields[0], notes);
+                int keyIndex = parseKey(field(fields, 1, "C"), field(fields, 2, "major"));
+                int instrument = parseInstrument(field(fields, 3, "Piano"));
+                int dynamic = parseDynamic(field(fields, 4, "mf"));
+
+                engine.scoreInto(notes, n, prev, prevLen, keyIndex, instrument, dynamic, score, ws);
+                out.write(composition, chord++, score);
+                System.arraycopy(notes, 0, prev, 0, n);
+                prevLen = n;
+            } catch (IllegalArgumentException e) {
+                errors++;
+                System.err.println("line " + lineNo + ": " + e.getMessage());
+            }
+            if (!in.ready()) out.flush(); // keep interactive pipelines moving
+        }
+        return errors;
+    }
+
+    private static int scoreMidi(TensionEngine engine, ResultsWriter out, ArrayList<File> files) throws IOException {
+        int errors = 0;
+        long composition = 0;
+        for (File file : files) {
+            try {
+                Composition c = MidiImporter.importFile(file);
+                ArrayList<ChordScore> scores = engine.score(c);
+                for (int i = 0; i < scores.size(); i++) out.write(composition, i, scores.get(i));
+                composition++;
+            } catch (IOException | InvalidMidiDataException | IllegalArgumentException e) {
+                errors++;
+                System.err.println(file + ": " + e.getMessage());
+            }
+        }
+        return errors;
+    }
+
+    private static int parseNotes(String s, int[] into) {
+        int n = 0;
+        for (String token : s.trim().split("[\\s,]+")) {
+            if (token.isEmpty()) continue;
+            if (n == into.length) throw new IllegalArgumentException("Too many notes");
+            int note;
+            try {
+                note = Integer.parseInt(token);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a MIDI note: " + token);
+            }
+            if (note < 0 || note > 127) throw new IllegalArgumentException("MIDI note out of range: " + note);
+            into[n++] = note;
+        }
+        if (n == 0) throw new IllegalArgumentException("No notes");
+        return n;
+    }
+
+    // The shared lookups fall back to C, Piano and mf; here a typo is an error.
+    private static int parseKey(String key, String mode) {
+        if (DissonanceCalculator.noteNameToPitchClass(key) == 0 && !key.equals("C")) {
+            throw new IllegalArgumentException("Unknown key: " + key);
+        }
+        String m = mode.toLowerCase();
+        if (!m.startsWith("maj") && !m.startsWith("min")) {
+            throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+        return TivTable.keyIndex(key, m.startsWith("maj"));
+    }
+
+    private static int parseInstrument(String name) {
+        int i = InstrumentOvertones.indexOf(name);
+        if (!InstrumentOvertones.INSTRUMENTS[i].equals(name)) {
+            throw new IllegalArgumentException("Unknown instrument: " + name);
+        }
+        return i;
+    }
+
+    private static int parseDynamic(String dyn) {
+        int d = TensionEngine.dynamicIndex(dyn);
+        if (!TensionEngine.DYNAMICS[d].equals(dyn)) {
+            throw new IllegalArgumentException("Unknown dynamic: " + dyn);
+        }
+        return d;
+    }
+
+    private static String field(String[] fields, int i, String fallback) {
+        return i < fields.length && !fields[i].isBlank() ? fields[i].trim() : fallback;
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) usage("Missing value for " + args[i - 1]);
+        return args[i];
+    }
+
+    private static int intValue(String[] args, int i) {
+        String s = value(args, i);
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            usage("Not a number for " + args[i - 1] + ": " + s);
+            return 0;
+        }
+    }
+
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println("Run with --help for usage.");
+        System.exit(2);
+    }
+}
@@ -0,0 +1,257 @@
+import java.util.ArrayList;
+
+/**
+ * Headless scoring engine. Turns a Composition (or single chords) into
+ * ChordScore results without touching Swing, so it can be used from batch
+ * jobs as well as from MyProgram.
+ */
+public class TensionEngine {
+
+    // Holistic weights, in README component order
+    public static final double[] DEFAULT_WEIGHTS = {
+        0.4,   // distance from previous chord (same as ttpChord)
+        0.2,   // distance from key
+        0.2,   // distance from tonal function
+        1.0,   // roughness (already scaled by 0.425 * O in normalSethares)
+        0.15,  // voice leading (same as ttpChord)
+        0.075, // hierarchical tension (same as ttpChord)
+        1.0    // temporal instability (already scaled by 0.425 * (1 - O))
+    };
+
+    private volatile double[] weights;
+    private boolean signalRqa;
+    private ScoreCache cache;
+
+    private static final ThreadLocal<RecurrenceAnalyzer> ANALYZERS =
+            ThreadLocal.withInitial(RecurrenceAnalyzer::new);
+
+    public TensionEngine() {
+        this(DEFAULT_WEIGHTS);
+    }
+
+    public TensionEngine(double[] weights) {
+        setWeights(weights);
+    }
+
+    /** Replaces the holistic weights, e.g. with a fitted WeightProfile; safe while scoring. */
+    public void setWeights(double[] weights) {
+        if (weights.length != ChordScore.COMPONENTS)
+            throw new IllegalArgumentException("Expected " + ChordScore.COMPONENTS + " weights");
+        this.weights = weights.clone();
+    }
+
+    public double[] getWeights() {
+        return weights.clone();
+    }
+
+    /**
+     * When enabled, the RQA score is the determinism of the synthesized chord
+     * waveform (RecurrenceAnalyzer) instead of DissonanceCalculator.rqa.
+     */
+    public void setSignalRqa(boolean enabled) {
+        this.signalRqa = enabled;
+    }
+
+    /**
+     * Puts a ScoreCache in front of the context-free score components; null
+     * turns caching off. A cache can be shared between engines.
+     */
+    public void setCache(ScoreCache cache) {
+        this.cache = cache;
+    }
+
+    public ScoreCache getCache() {
+        return cache;
+    }
+
+    // Utility Methods
+
+    public static double dynamicsToAmplitude(String dyn) {
+        if (dyn == null) return 0.8;
+        return switch (dyn) {
+            case "pp" -> 0.2;
+            case "p"  -> 0.4;
+            case "mp" -> 0.6;
+            case "mf" -> 0.8;
+            case "f"  -> 1.0;
+            case "ff" -> 1.2;
+            default   -> 0.8;
+        };
+    }
+
+    // Fixed ordinal codes for dynamics, mf when unknown
+    public static final String[] DYNAMICS = {"pp", "p", "mp", "mf", "f", "ff"};
+    public static final int MF = 3;
+
+    public static int dynamicIndex(String dyn) {
+        if (dyn == null) return MF;
+        for (int i = 0; i < DYNAMICS.length; i++) if (DYNAMICS[i].equals(dyn)) return i;
+        return MF;
+    }
+
+    public static double midiToFrequency(int midi) {
+        return 440.0 * Math.pow(2, (midi - 69) / 12.0);
+    }
+
+    public static int[] toArray(ArrayList<Integer> notes) {
+        int[] out = new int[notes.size()];
+        for (int i = 0; i < out.length; i++) out[i] = notes.get(i);
+        return out;
+    }
+
+    // Scoring
+
+    /** Scores every chord of the composition in order. */
+    public ArrayList<ChordScore> score(Composition composition) {
+        String key = composition.key != null ? composition.key : "C";
+        int keyIndex = TivTable.keyIndex(key, composition.isMajor);
+        ScoringWorkspace ws = ScoringWorkspace.forThread();
+        ArrayList<ChordScore> scores = new ArrayList<>();
+        Chord prev = null;
+        for (Chord chord : composition.chords) {
+            int n = copyNotes(chord, ws.notes);
+            int prevLen = prev != null ? copyNotes(prev, ws.prevNotes) : -1;
+            ChordScore s = new ChordScore();
+            scoreInto(ws.notes, n, ws.prevNotes, prevLen, keyIndex,
+                    InstrumentOvertones.indexOf(chord.instrument), dynamicIndex(chord.dynamics), s, ws);
+            scores.add(s);
+            prev = chord;
+        }
+        return scores;
+    }
+
+    public ChordScore scoreChord(Chord chord, Chord prev, String key, boolean isMajor) {
+        int[] prevNotes = prev != null ? toArray(prev.midiNotes) : null;
+        return scoreChord(toArray(chord.midiNotes), prevNotes, key, isMajor, chord.instrument, chord.dynamics);
+    }
+
+    /**
+     * Scores one chord given the previous chord (null for the first chord of a
+     * progression) and the key context.
+     */
+    public ChordScore scoreChord(int[] notes, int[] prevNotes, String key, boolean isMajor,
+                                 String instrument, String dynamics) {
+        ChordScore s = new ChordScore();
+        scoreInto(notes, notes.length, prevNotes, prevNotes != null ? prevNotes.length : -1,
+                TivTable.keyIndex(key, isMajor), InstrumentOvertones.indexOf(instrument),
+                dynamicIndex(dynamics), s, ScoringWorkspace.forThread());
+        return s;
+    }
+
+    /**
+     * Allocation-free scoring on primitive inputs: the first n entries of notes,
+     * the first prevLen entries of prevNotes (negative for no previous chord),
+     * a TivTable key index and the ordinal instrument and dynamic codes. Results
+     * go into out; ws supplies the scratch buffers. Once the spectra and pair
+     * table entries for the notes exist this allocates nothing, unless signal
+     * RQA or a ScoreCache is enabled.
+     */
+    public void scoreInto(int[] notes, int n, int[] prevNotes, int prevLen, int keyIndex,
+                          int instrument, int dynamic, ChordScore out, ScoringWorkspace ws) {
+        boolean hasPrev = prevNotes != null && prevLen > 0;
+        out.sethares = out.ttp = out.rqa = out.holistic = 0;
+        out.prevDistance = out.keyDistance = out.functionDistance = out.roughness = 0;
+        out.voiceLeading = out.hierarchical = out.temporalInstability = 0;
+        if (n == 0) return;
+
+        // Context-free parts, from the cache when one is set. Chords with a
+        // repeated note are not cached since the note set would hide it.
+        ScoreCache.Key cacheKey = null;
+        if (cache != null) {
+            long lo = 0, hi = 0;
+            for (int i = 0; i < n; i++) {
+                int note = notes[i];
+                // Shifts wrap mod 64, so an unchecked note would alias another chord's key
+                if (note < 0 || note > 127) throw new IllegalArgumentException("MIDI note out of range: " + note);
+                if (note < 64) lo |= 1L << note;
+                else hi |= 1L << (note - 64);
+            }
+            if (Long.bitCount(lo) + Long.bitCount(hi) == n) {
+                cacheKey = new ScoreCache.Key(lo, hi, keyIndex, instrument, dynamic, signalRqa);
+            }
+        }
+        boolean hit = cacheKey != null && cache.lookup(cacheKey, out);
+        if (cacheKey != null) ScoringMetrics.cacheLookup(hit);
+        if (!hit) {
+            contextFree(notes, n, keyIndex, instrument, dynamic, out, ws);
+            if (cacheKey != null) cache.put(cacheKey, out);
+        }
+
+        // Parts that depend on the previous chord
+        long t = ScoringMetrics.start();
+        out.ttp = DissonanceCalculator.ttpChord(notes, n, prevNotes, hasPrev ? prevLen : -1);
+        if (hasPrev) {
+            int mask = TivTable.chordMask(notes, n);
+            out.prevDistance = TivTable.distance(mask, TivTable.chordMask(prevNotes, prevLen));
+            out.voiceLeading = DissonanceCalculator.voiceLeading(prevNotes, prevLen, notes, n);
+        }
+        ScoringMetrics.stop(ScoringMetrics.TTP, t);
+
+        t = ScoringMetrics.start();
+        out.holistic = combine(out);
+        ScoringMetrics.stop(ScoringMetrics.COMBINE, t);
+    }
+
+    private void contextFree(int[] notes, int n, int keyIndex, int instrument, int dynamic,
+                             ChordScore out, ScoringWorkspace ws) {
+        double O = InstrumentOvertones.getOvertone(instrument);
+
+        // Psychoacoustic: roughness over the instrument's partials, built from
+        // the note-pair table; RQA over the fundamentals or the waveform
+        long t = ScoringMetrics.start();
+        PairRoughnessTable table = PairRoughnessTable.get(instrument, dynamic);
+        int partials = table.chordSums(notes, n, ws.sums);
+        out.sethares = ws.sums[PairRoughnessTable.SETHARES] * 1000000000 * 50;
+        ScoringMetrics.stop(ScoringMetrics.SETHARES, t);
+
+        t = ScoringMetrics.start();
+        for (int i = 0; i < n; i++) ws.freqs[i] = midiToFrequency(notes[i]);
+        out.rqa = signalRqa
+                ? ANALYZERS.get().analyze(chordSpectrum(notes, n, instrument, dynamic), 0.5).determinism
+                : DissonanceCalculator.rqa(ws.freqs, n);
+        ScoringMetrics.stop(ScoringMetrics.RQA, t);
+
+        // Harmonic context, from the precomputed TIV table
+        int mask = TivTable.chordMask(notes, n);
+        out.keyDistance = TivTable.keyDistance(mask, keyIndex);
+        out.functionDistance = TivTable.functionDistance(mask, keyIndex);
+        out.hierarchical = outOfKeyFraction(notes, n, TivTable.keyMask(keyIndex));
+
+        // Timbre split of the psychoacoustic weight (README: Timbre Adaptation)
+        out.roughness = DissonanceCalculator.normalizeRoughness(ws.sums[PairRoughnessTable.NORMAL], partials, O);
+        out.temporalInstability = 0.425 * (1 - O) * (1 - out.rqa);
+    }
+
+    /** Allocation-free scoring of compact chords; prev may be null. */
+    public void scoreInto(CompactChord chord, CompactChord prev, int keyIndex, ChordScore out, ScoringWorkspace ws) {
+        int n = chord.notes(ws.notes);
+        int prevLen = prev != null ? prev.notes(ws.prevNotes) : -1;
+        scoreInto(ws.notes, n, ws.prevNotes, prevLen, keyIndex, chord.instrument, chord.dynamic, out, ws);
+    }
+
+    public double combine(ChordScore s) {
+        double[] w = weights;
+        double h = 0;
+        for (int i = 0; i < ChordScore.COMPONENTS; i++) h += w[i] * s.component(i);
+        return h;
+    }
+
+    // Share of the chord's notes that fall outside the key
+    private static double outOfKeyFraction(int[] notes, int n, int keyMask) {
+        int outside = 0;
+        for (int i = 0; i < n; i++) if ((keyMask & (1 << (notes[i] % 12))) == 0) outside++;
+        return (double) outside / n;
+    }
+
+    private static Spectrum chordSpectrum(int[] notes, int n, int instrument, int dynamic) {
+        int[] chord = new int[n];
+        System.arraycopy(notes, 0, chord, 0, n);
+        return Spectrum.chord(chord, InstrumentOvertones.INSTRUMENTS[instrument], DYNAMICS[dynamic]);
+    }
+
+    private static int copyNotes(Chord chord, int[] into) {
+        int n = Math.min(chord.midiNotes.size(), into.length);
+        for (int i = 0; i < n; i++) into[i] = chord.midiNotes.get(i);
+        return n;
+    }
+}
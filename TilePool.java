@@ -0,0 +1,52 @@
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Fixed pool of daemon threads that runs a range of work cut into tiles and
+ * waits for all of them. Shared by DissonanceCurves and ProgressionSearch.
+ */
+class TilePool implements AutoCloseable {
+
+    interface Tile {
+        void run(int from, int to);
+    }
+
+    private final String name;
+    private final ExecutorService pool;
+
+    TilePool(String name, int threads) {
+        this.name = name;
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Runs tile over [0, count) in tiles of tileSize; the first failure cancels the rest. */
+    void run(int count, int tileSize, Tile tile) {
+        ArrayList<Future<?>> futures = new ArrayList<>();
+        for (int from = 0; from < count; from += tileSize) {
+            int start = from, end = Math.min(count, from + tileSize);
+            futures.add(pool.submit(() -> tile.run(start, end)));
+        }
+        try {
+            for (Future<?> f : futures) f.get();
+        } catch (InterruptedException e) {
+            for (Future<?> f : futures) f.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted in " + name, e);
+        } catch (ExecutionException e) {
+            for (Future<?> f : futures) f.cancel(true);
+            throw new IllegalStateException(name + " failed", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * Precomputed Tonal Interval Vectors for every binary chroma vector.
+ *
+ * A binary chroma is encoded as a 12-bit pitch-class mask (bit p set when
+ * pitch class p is present), so the 4096 possible chromas index straight into
+ * the table and tonal-distance lookups need no trig calls. The magnitude
+ * entries match DissonanceCalculator.chromaToTIV for the corresponding 0/1
+ * chroma. Magnitudes are the same for every transposition and for the
+ * complement, so distances to a key or its functions use the complex TIVs,
+ * which keep the phase.
+ */
+public class TivTable {
+
+    public static final int SIZE = 4096;
+    public static final int DIM = 6;
+
+    // TIV of mask m lives at [m * DIM, m * DIM + DIM)
+    private static final double[] TIVS = new double[SIZE * DIM];
+    // Complex TIV of mask m, laid out the same way
+    private static final double[] REAL = new double[SIZE * DIM];
+    private static final double[] IMAG = new double[SIZE * DIM];
+    private static final double[] MAGNITUDE_SUMS = new double[SIZE];
+
+    // 12 major keys (index = tonic) followed by 12 minor keys
+    private static final int[] KEY_MASKS = new int[24];
+    // Tonic, subdominant and dominant triad masks per key index
+    private static final int[][] FUNCTION_MASKS = new int[24][3];
+
+    static {
+        double[] cos = new double[DIM * 12];
+        double[] sin = new double[DIM * 12];
+        for (int k = 1; k <= DIM; k++) {
+            for (int n = 0; n < 12; n++) {
+                double angle = -2 * Math.PI * k * n / 12;
+                cos[(k - 1) * 12 + n] = Math.cos(angle);
+                sin[(k - 1) * 12 + n] = Math.sin(angle);
+            }
+        }
+        for (int m = 0; m < SIZE; m++) {
+            double sum = 0;
+            for (int k = 0; k < DIM; k++) {
+                double real = 0, imag = 0;
+                for (int n = 0; n < 12; n++) {
+                    int c = (m >> n) & 1;
+                    real += c * cos[k * 12 + n];
+                    imag += c * sin[k * 12 + n];
+                }
+                double v = Math.sqrt(real * real + imag * imag);
+                TIVS[m * DIM + k] = v;
+                REAL[m * DIM + k] = real;
+                IMAG[m * DIM + k] = imag;
+                sum += v;
+            }
+            MAGNITUDE_SUMS[m] = sum;
+        }
+
+        int[] major = {0, 2, 4, 5, 7, 9, 11};
+        int[] minor = {0, 2, 3, 5, 7, 8, 10};
+        for (int tonic = 0; tonic < 12; tonic++) {
+            for (int mode = 0; mode < 2; mode++) {
+                int idx = mode * 12 + tonic;
+                int third = mode == 0 ? 4 : 3;
+                int m = 0;
+                for (int p : mode == 0 ? major : minor) m |= 1 << ((tonic + p) % 12);
+                KEY_MASKS[idx] = m;
+                FUNCTION_MASKS[idx][0] = triadMask(tonic, tonic + third, tonic + 7);
+                FUNCTION_MASKS[idx][1] = triadMask(tonic + 5, tonic + 5 + third, tonic);
+                // Dominant is a major triad in both modes (harmonic minor)
+                FUNCTION_MASKS[idx][2] = triadMask(tonic + 7, tonic + 11, tonic + 2);
+            }
+        }
+    }
+
+    private static int triadMask(int a, int b, int c) {
+        return (1 << (a % 12)) | (1 << (b % 12)) | (1 << (c % 12));
+    }
+
+    // Masks
+
+    public static int mask(int[] chroma) {
+        int m = 0;
+        for (int p = 0; p < 12; p++) if (chroma[p] != 0) m |= 1 << p;
+        return m;
+    }
+
+    public static int chordMask(int[] notes) {
+        return chordMask(notes, notes.length);
+    }
+
+    public static int chordMask(int[] notes, int n) {
+        int m = 0;
+        for (int i = 0; i < n; i++) m |= 1 << (notes[i] % 12);
+        return m;
+    }
+
+    public static int keyIndex(String key, boolean isMajor) {
+        return (isMajor ? 0 : 12) + DissonanceCalculator.noteNameToPitchClass(key);
+    }
+
+    public static int keyMask(int keyIndex) {
+        return KEY_MASKS[keyIndex];
+    }
+
+    public static int keyMask(String key, boolean isMajor) {
+        return KEY_MASKS[keyIndex(key, isMajor)];
+    }
+
+    public static int functionMask(int keyIndex, int function) {
+        return FUNCTION_MASKS[keyIndex][function];
+    }
+
+    // Lookups
+
+    public static double get(int mask, int k) {
+        return TIVS[mask * DIM + k];
+    }
+
+    public static double[] tiv(int mask) {
+        double[] out = new double[DIM];
+        System.arraycopy(TIVS, mask * DIM, out, 0, DIM);
+        return out;
+    }
+
+    // Sum of the TIV magnitudes (the ttpChord dissonance term)
+    public static double magnitudeSum(int mask) {
+        return MAGNITUDE_SUMS[mask];
+    }
+
+    public static double distance(int maskA, int maskB) {
+        int a = maskA * DIM, b = maskB * DIM;
+        double sum = 0;
+        for (int k = 0; k < DIM; k++) {
+            double d = TIVS[a + k] - TIVS[b + k];
+            sum += d * d;
+        }
+        return Math.sqrt(sum);
+    }
+
+    public static double angle(int maskA, int maskB) {
+        int a = maskA * DIM, b = maskB * DIM;
+        double dot = 0, norm1 = 0, norm2 = 0;
+        for (int k = 0; k < DIM; k++) {
+            dot += TIVS[a + k] * TIVS[b + k];
+            norm1 += TIVS[a + k] * TIVS[a + k];
+            norm2 += TIVS[b + k] * TIVS[b + k];
+        }
+        return acos(dot, norm1, norm2);
+    }
+
+    // Angle from a dot product and squared norms; rounding can push the cosine
+    // just past +-1 (e.g. a chord against its complement), and an empty chord
+    // has no direction, so it counts as 0
+    private static double acos(double dot, double norm1, double norm2) {
+        if (norm1 == 0 || norm2 == 0) return 0;
+        return Math.acos(Math.max(-1, Math.min(1, dot / (Math.sqrt(norm1) * Math.sqrt(norm2)))));
+    }
+
+    // Distance between the complex TIVs, so transpositions are told apart
+    public static double complexDistance(int maskA, int maskB) {
+        int a = maskA * DIM, b = maskB * DIM;
+        double sum = 0;
+        for (int k = 0; k < DIM; k++) {
+            double dr = REAL[a + k] - REAL[b + k], di = IMAG[a + k] - IMAG[b + k];
+            sum += dr * dr + di * di;
+        }
+        return Math.sqrt(sum);
+    }
+
+    // Angle between the complex TIVs (real part of the Hermitian product)
+    public static double complexAngle(int maskA, int maskB) {
+        int a = maskA * DIM, b = maskB * DIM;
+        double dot = 0, norm1 = 0, norm2 = 0;
+        for (int k = 0; k < DIM; k++) {
+            dot += REAL[a + k] * REAL[b + k] + IMAG[a + k] * IMAG[b + k];
+            norm1 += REAL[a + k] * REAL[a + k] + IMAG[a + k] * IMAG[a + k];
+            norm2 += REAL[b + k] * REAL[b + k] + IMAG[b + k] * IMAG[b + k];
+        }
+        return acos(dot, norm1, norm2);
+    }
+
+    // Angle to the key's scale
+    public static double keyDistance(int mask, int keyIndex) {
+        return complexAngle(mask, KEY_MASKS[keyIndex]);
+    }
+
+    // Distance to the nearest tonic, subdominant or dominant triad of the key
+    public static double functionDistance(int mask, int keyIndex) {
+        int[] fn = FUNCTION_MASKS[keyIndex];
+        return Math.min(complexDistance(mask, fn[0]),
+                Math.min(complexDistance(mask, fn[1]), complexDistance(mask, fn[2])));
+    }
+}
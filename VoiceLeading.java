@@ -0,0 +1,121 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Optimal voice-leading distance between two chords, independent of the
+ * order the notes were entered in.
+ *
+ * Chords are treated as sets of MIDI notes. A voice leading links every note
+ * of the previous chord to at least one note of the current chord and vice
+ * versa, so voices may split (doubling) or merge when the chords differ in
+ * size. Its cost is the total distance moved in semitones; the distance is
+ * the cheapest cost divided by the size of the larger chord, i.e. semitones
+ * per voice. On a line with |a - b| costs some optimal voice leading never
+ * crosses voices, so a DP over both chords in ascending order finds it in
+ * O(m * n).
+ *
+ * Results are memoized by the chord pair's 128-bit note masks in a bounded,
+ * direct-mapped table: a colliding pair simply replaces the old entry.
+ */
+public class VoiceLeading {
+
+    private static final int CACHE_BITS = 16;
+
+    private static final class Entry {
+        final long prevLo, prevHi, currLo, currHi;
+        final double distance;
+
+        Entry(long prevLo, long prevHi, long currLo, long currHi, double distance) {
+            this.prevLo = prevLo;
+            this.prevHi = prevHi;
+            this.currLo = currLo;
+            this.currHi = currHi;
+            this.distance = distance;
+        }
+    }
+
+    private static final AtomicReferenceArray<Entry> CACHE = new AtomicReferenceArray<>(1 << CACHE_BITS);
+
+    private static final class Scratch {
+        final int[] prev = new int[128];
+        final int[] curr = new int[128];
+        final double[] row = new double[128];
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    public static double distance(CompactChord prev, CompactChord curr) {
+        return distance(prev.lo, prev.hi, curr.lo, curr.hi);
+    }
+
+    /** Notes may be in any order; duplicates count once. */
+    public static double distance(int[] prev, int prevLen, int[] curr, int currLen) {
+        long prevLo = 0, prevHi = 0, currLo = 0, currHi = 0;
+        for (int i = 0; i < prevLen; i++) {
+            int note = checked(prev[i]);
+            if (note < 64) prevLo |= 1L << note;
+            else prevHi |= 1L << (note - 64);
+        }
+        for (int i = 0; i < currLen; i++) {
+            int note = checked(curr[i]);
+            if (note < 64) currLo |= 1L << note;
+            else currHi |= 1L << (note - 64);
+        }
+        return distance(prevLo, prevHi, currLo, currHi);
+    }
+
+    /** Distance between two note sets given as CompactChord-style masks; 0 if either is empty. */
+    public static double distance(long prevLo, long prevHi, long currLo, long currHi) {
+        if ((prevLo | prevHi) == 0 || (currLo | currHi) == 0) return 0;
+
+        int slot = slot(prevLo, prevHi, currLo, currHi);
+        Entry e = CACHE.get(slot);
+        if (e != null && e.prevLo == prevLo && e.prevHi == prevHi && e.currLo == currLo && e.currHi == currHi) {
+            return e.distance;
+        }
+        double d = compute(prevLo, prevHi, currLo, currHi);
+        CACHE.set(slot, new Entry(prevLo, prevHi, currLo, currHi, d));
+        return d;
+    }
+
+    private static double compute(long prevLo, long prevHi, long currLo, long currHi) {
+        Scratch s = SCRATCH.get();
+        int m = notes(prevLo, prevHi, s.prev);
+        int n = notes(currLo, currHi, s.curr);
+        int[] p = s.prev, c = s.curr;
+        double[] row = s.row;
+
+        // row[j] = cheapest voice leading of p[0..i] and c[0..j] whose last link is (i, j)
+        for (int i = 0; i < m; i++) {
+            double diag = 0; // row[j - 1] of the previous i
+            for (int j = 0; j < n; j++) {
+                double best;
+                if (i == 0 && j == 0) best = 0;
+                else if (i == 0) best = row[j - 1];
+                else if (j == 0) best = row[0];
+                else best = Math.min(diag, Math.min(row[j], row[j - 1]));
+                diag = row[j];
+                row[j] = best + Math.abs(p[i] - c[j]);
+            }
+        }
+        return row[n - 1] / Math.max(m, n);
+    }
+
+    private static int notes(long lo, long hi, int[] into) {
+        int n = 0;
+        for (long bits = lo; bits != 0; bits &= bits - 1) into[n++] = Long.numberOfTrailingZeros(bits);
+        for (long bits = hi; bits != 0; bits &= bits - 1) into[n++] = 64 + Long.numberOfTrailingZeros(bits);
+        return n;
+    }
+
+    private static int slot(long prevLo, long prevHi, long currLo, long currHi) {
+        long h = prevLo * 0x9E3779B97F4A7C15L + prevHi;
+        h = h * 0x9E3779B97F4A7C15L + currLo;
+        h = h * 0x9E3779B97F4A7C15L + currHi;
+        return (int) (h >>> (64 - CACHE_BITS));
+    }
+
+    private static int checked(int note) {
+        if (note < 0 || note > 127) throw new IllegalArgumentException("MIDI note out of range: " + note);
+        return note;
+    }
+}
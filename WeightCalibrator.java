@@ -0,0 +1,168 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Objects;
+
+/**
+ * Fits the holistic weights to listener ratings by ridge regression.
+ *
+ * Each rated chord (with its previous chord and key) is turned into its
+ * seven ChordScore components once; the vectors are memoized per stimulus,
+ * since batches rate the same chords over and over. Ratings only update
+ * running means and co-moments, so the sufficient statistics are a 7x7 matrix
+ * and a fit is a closed-form 7x7 solve whatever the number of ratings:
+ *
+ *   minimize  sum (rating - b - w.x)^2 + lambda * |w - prior|^2
+ *
+ * with an unpenalized intercept b. Shrinking toward a prior (the default
+ * weights unless given) rather than toward zero keeps components that the
+ * ratings say little about at their hand-tuned values. The roughness and
+ * temporal-instability components carry the psychoacoustic split, so fitting
+ * them recalibrates that split too.
+ *
+ * Instances are thread-safe.
+ */
+public class WeightCalibrator {
+
+    public static final double DEFAULT_LAMBDA = 1.0;
+
+    private static final int D = ChordScore.COMPONENTS;
+
+    private static final class Stimulus {
+        final CompactChord chord;
+        final CompactChord prev;
+        final int keyIndex;
+
+        Stimulus(CompactChord chord, CompactChord prev, int keyIndex) {
+            this.chord = chord;
+            this.prev = prev;
+            this.keyIndex = keyIndex;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Stimulus)) return false;
+            Stimulus s = (Stimulus) o;
+            return keyIndex == s.keyIndex && chord.equals(s.chord) && Objects.equals(prev, s.prev);
+        }
+
+        @Override
+        public int hashCode() {
+            return (chord.hashCode() * 31 + Objects.hashCode(prev)) * 31 + keyIndex;
+        }
+    }
+
+    private final TensionEngine engine = new TensionEngine();
+    private final HashMap<Stimulus, double[]> components = new HashMap<>();
+    private final ChordScore scratch = new ChordScore();
+
+    // Running means and co-moments of the component vectors x and ratings y
+    private long n;
+    private final double[] meanX = new double[D];
+    private double meanY;
+    private final double[] cxx = new double[D * D];
+    private final double[] cxy = new double[D];
+    private double cyy;
+
+    public void add(Chord chord, Chord prev, String key, boolean isMajor, double rating) {
+        add(CompactChord.of(chord), prev != null ? CompactChord.of(prev) : null,
+                TivTable.keyIndex(key != null ? key : "C", isMajor), rating);
+    }
+
+    public synchronized void add(CompactChord chord, CompactChord prev, int keyIndex, double rating) {
+        double[] x = components.computeIfAbsent(new Stimulus(chord, prev, keyIndex), s -> {
+            engine.scoreInto(s.chord, s.prev, s.keyIndex, scratch, ScoringWorkspace.forThread());
+            double[] v = new double[D];
+            for (int i = 0; i < D; i++) v[i] = scratch.component(i);
+            return v;
+        });
+        add(x, rating);
+    }
+
+    /** Adds a rating for an already computed component vector (ChordScore.component order). */
+    public synchronized void add(double[] x, double rating) {
+        if (x.length != D) throw new IllegalArgumentException("Expected " + D + " components");
+        if (Double.isNaN(rating)) throw new IllegalArgumentException("Rating is NaN");
+        n++;
+        double[] dx = new double[D];
+        for (int i = 0; i < D; i++) {
+            dx[i] = x[i] - meanX[i];
+            meanX[i] += dx[i] / n;
+        }
+        double dy = rating - meanY;
+        meanY += dy / n;
+        double ry = rating - meanY;
+        for (int i = 0; i < D; i++) {
+            for (int j = 0; j < D; j++) cxx[i * D + j] += dx[i] * (x[j] - meanX[j]);
+            cxy[i] += dx[i] * ry;
+        }
+        cyy += dy * ry;
+    }
+
+    public synchronized long count() {
+        return n;
+    }
+
+    public synchronized void clear() {
+        n = 0;
+        meanY = cyy = 0;
+        Arrays.fill(meanX, 0);
+        Arrays.fill(cxx, 0);
+        Arrays.fill(cxy, 0);
+    }
+
+    public WeightProfile fit() {
+        return fit(DEFAULT_LAMBDA, TensionEngine.DEFAULT_WEIGHTS);
+    }
+
+    public synchronized WeightProfile fit(double lambda, double[] prior) {
+        if (prior.length != D) throw new IllegalArgumentException("Expected " + D + " prior weights");
+        if (lambda < 0) throw new IllegalArgumentException("lambda must be >= 0");
+        if (n == 0) return new WeightProfile(prior, 0, lambda, 0, Double.NaN);
+
+        double[] a = new double[D * D];
+        double[] w = new double[D];
+        for (int i = 0; i < D; i++) {
+            for (int j = 0; j < D; j++) a[i * D + j] = cxx[i * D + j];
+            a[i * D + i] += lambda;
+            w[i] = cxy[i] + lambda * prior[i];
+        }
+        choleskySolve(a, w);
+
+        double intercept = meanY;
+        for (int i = 0; i < D; i++) intercept -= w[i] * meanX[i];
+
+        // Residual sum of squares from the co-moments
+        double sse = cyy;
+        for (int i = 0; i < D; i++) {
+            sse -= 2 * w[i] * cxy[i];
+            for (int j = 0; j < D; j++) sse += w[i] * cxx[i * D + j] * w[j];
+        }
+        return new WeightProfile(w, intercept, lambda, n, Math.sqrt(Math.max(0, sse) / n));
+    }
+
+    // Solves a x = b in place (x into b) for symmetric positive definite a
+    private static void choleskySolve(double[] a, double[] b) {
+        for (int j = 0; j < D; j++) {
+            double d = a[j * D + j];
+            for (int k = 0; k < j; k++) d -= a[j * D + k] * a[j * D + k];
+            if (d <= 1e-12) throw new IllegalStateException("Ratings do not determine the weights; use lambda > 0");
+            d = Math.sqrt(d);
+            a[j * D + j] = d;
+            for (int i = j + 1; i < D; i++) {
+                double s = a[i * D + j];
+                for (int k = 0; k < j; k++) s -= a[i * D + k] * a[j * D + k];
+                a[i * D + j] = s / d;
+            }
+        }
+        for (int i = 0; i < D; i++) {
+            double s = b[i];
+            for (int k = 0; k < i; k++) s -= a[i * D + k] * b[k];
+            b[i] = s / a[i * D + i];
+        }
+        for (int i = D - 1; i >= 0; i--) {
+            double s = b[i];
+            for (int k = i + 1; k < D; k++) s -= a[k * D + i] * b[k];
+            b[i] = s / a[i * D + i];
+        }
+    }
+}
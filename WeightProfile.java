@@ -0,0 +1,92 @@
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Properties;
+
+/**
+ * A fitted set of holistic weights, as produced by WeightCalibrator. The
+ * predicted listener rating of a chord is intercept + the engine's holistic
+ * score under these weights. Profiles are stored as Properties files, one
+ * "weight.<component>" entry per ChordScore component.
+ */
+public class WeightProfile {
+
+    public final double[] weights;
+    public final double intercept;
+    public final double lambda;   // ridge strength the fit used
+    public final long ratings;    // number of ratings fitted
+    public final double rmse;     // root mean squared error on those ratings
+
+    public WeightProfile(double[] weights, double intercept, double lambda, long ratings, double rmse) {
+        if (weights.length != ChordScore.COMPONENTS)
+            throw new IllegalArgumentException("Expected " + ChordScore.COMPONENTS + " weights");
+        this.weights = weights.clone();
+        this.intercept = intercept;
+        this.lambda = lambda;
+        this.ratings = ratings;
+        this.rmse = rmse;
+    }
+
+    public static WeightProfile defaults() {
+        return new WeightProfile(TensionEngine.DEFAULT_WEIGHTS, 0, 0, 0, Double.NaN);
+    }
+
+    public double predict(ChordScore score) {
+        double p = intercept;
+        for (int i = 0; i < ChordScore.COMPONENTS; i++) p += weights[i] * score.component(i);
+        return p;
+    }
+
+    public void applyTo(TensionEngine engine) {
+        engine.setWeights(weights);
+    }
+
+    public void save(File file) throws IOException {
+        try (Writer out = new FileWriter(file)) {
+            save(out);
+        }
+    }
+
+    public void save(Writer out) throws IOException {
+        Properties p = new Properties();
+        for (int i = 0; i < ChordScore.COMPONENTS; i++) {
+            p.setProperty("weight." + ChordScore.NAMES[i], Double.toString(weights[i]));
+        }
+        p.setProperty("intercept", Double.toString(intercept));
+        p.setProperty("lambda", Double.toString(lambda));
+        p.setProperty("ratings", Long.toString(ratings));
+        p.setProperty("rmse", Double.toString(rmse));
+        p.store(out, "Tonal Dissonance weight profile");
+    }
+
+    public static WeightProfile load(File file) throws IOException {
+        try (Reader in = new FileReader(file)) {
+            return load(in);
+        }
+    }
+
+    /** Missing weights fall back to TensionEngine.DEFAULT_WEIGHTS. */
+    public static WeightProfile load(Reader in) throws IOException {
+        Properties p = new Properties();
+        p.load(in);
+        double[] w = new double[ChordScore.COMPONENTS];
+        for (int i = 0; i < w.length; i++) {
+            w[i] = number(p, "weight." + ChordScore.NAMES[i], TensionEngine.DEFAULT_WEIGHTS[i]);
+        }
+        return new WeightProfile(w, number(p, "intercept", 0), number(p, "lambda", 0),
+                (long) number(p, "ratings", 0), number(p, "rmse", Double.NaN));
+    }
+
+    private static double number(Properties p, String key, double fallback) {
+        String v = p.getProperty(key);
+        if (v == null) return fallback;
+        try {
+            return Double.parseDouble(v.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad value for " + key + ": " + v, e);
+        }
+    }
+}
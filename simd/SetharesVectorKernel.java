@@ -0,0 +1,73 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD RoughnessKernel: each row i of the pair triangle is processed a lane
+ * batch of partners j at a time, with the tail finished in scalar code.
+ * Loaded reflectively by RoughnessKernels; see there for how to build it.
+ */
+public class SetharesVectorKernel implements RoughnessKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public double setharesSum(double[] freqs, double[] amplitudes, int n) {
+        double s = 0.24;
+        double D = 0;
+        int lanes = SPECIES.length();
+        for (int i = 0; i < n; i++) {
+            double f1 = freqs[i], a1 = amplitudes[i];
+            DoubleVector acc = DoubleVector.zero(SPECIES);
+            int j = i + 1;
+            for (; j + lanes <= n; j += lanes) {
+                DoubleVector f2 = DoubleVector.fromArray(SPECIES, freqs, j);
+                DoubleVector a2 = DoubleVector.fromArray(SPECIES, amplitudes, j);
+                DoubleVector y = f2.sub(f1).abs().mul(s);
+                DoubleVector g = y.mul(-3.5).lanewise(VectorOperators.EXP)
+                        .sub(y.mul(-5.75).lanewise(VectorOperators.EXP));
+                acc = a2.mul(a1).fma(g, acc);
+            }
+            D += acc.reduceLanes(VectorOperators.ADD);
+            for (; j < n; j++) {
+                double y = s * Math.abs(freqs[j] - f1);
+                D += a1 * amplitudes[j] * (Math.exp(-3.5 * y) - Math.exp(-5.75 * y));
+            }
+        }
+        return D;
+    }
+
+    @Override
+    public double normalSum(double[] freqs, double[] amplitudes, int n) {
+        double s = 0.24;
+        double D = 0;
+        int lanes = SPECIES.length();
+        for (int i = 0; i < n; i++) {
+            double f1 = freqs[i], a1 = amplitudes[i];
+            DoubleVector acc = DoubleVector.zero(SPECIES);
+            int j = i + 1;
+            for (; j + lanes <= n; j += lanes) {
+                DoubleVector f2 = DoubleVector.fromArray(SPECIES, freqs, j);
+                DoubleVector a2 = DoubleVector.fromArray(SPECIES, amplitudes, j);
+                DoubleVector fMin = f2.min(f1);
+                DoubleVector y = f2.max(f1).sub(fMin).div(fMin.mul(s));
+                DoubleVector g = y.mul(-3.5).lanewise(VectorOperators.EXP)
+                        .sub(y.mul(-5.75).lanewise(VectorOperators.EXP));
+                acc = a2.mul(a1).fma(g, acc);
+            }
+            D += acc.reduceLanes(VectorOperators.ADD);
+            for (; j < n; j++) {
+                double fMin = Math.min(f1, freqs[j]);
+                double fMax = Math.max(f1, freqs[j]);
+                double y = (fMax - fMin) / (s * fMin);
+                D += a1 * amplitudes[j] * (Math.exp(-3.5 * y) - Math.exp(-5.75 * y));
+            }
+        }
+        return D;
+    }
+
+    @Override
+    public String toString() {
+        return "simd x" + SPECIES.length();
+    }
+}